@@ -0,0 +1,287 @@
+package com.studyplanner.models;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.studyplanner.models.*;
+
+// ===================== PLANNER BENCHMARKS =====================
+// Measures the planner's hot paths over generated datasets. This is a plain-Java harness, since
+// the project has no build manifest to pull in JMH. Each benchmark warms up first, then runs
+// for a fixed time. It reports the average time per operation and the bytes allocated per
+// operation by the measuring threads.
+//
+//   java -Xmx4g -cp bin com.studyplanner.models.PlannerBenchmark [--quick] [sizes...]
+//
+// Sizes are entity counts and default to 1000 10000 100000 1000000.
+public class PlannerBenchmark {
+    private static final int[] DEFAULT_SIZES = { 1_000, 10_000, 100_000, 1_000_000 };
+    private static final int[] READ_THREADS = { 1, 2, 4, 8 };
+
+    public static void main(String[] args) throws Exception {
+        boolean quick = false;
+        List<Integer> sizes = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.equals("--quick")) {
+                quick = true;
+            } else {
+                sizes.add(Integer.parseInt(arg.replace("_", "")));
+            }
+        }
+        if (sizes.isEmpty()) {
+            for (int size : DEFAULT_SIZES) {
+                sizes.add(size);
+            }
+        }
+        Logger.getInstance().setConsoleOutput(false);
+        Logger.getInstance().setLevel(LogLevel.WARN);
+        BenchmarkRunner runner = quick ? new BenchmarkRunner(200, 500) : new BenchmarkRunner(1000, 3000);
+        PlannerManager planner = PlannerManager.getInstance();
+        StudyPlanExporter exporter = new StudyPlanExporter();
+        AnalyticsEngine analytics = new AnalyticsEngine();
+        Writer discard = Writer.nullWriter();
+
+        System.out.println(BenchmarkRunner.HEADER);
+        for (int size : sizes) {
+            BenchmarkData data = BenchmarkData.generate(size, 42);
+            planner.installState(data.state);
+            ProgressCounters counters = ProgressCounters.of(data.state.tasks, data.state.sessions);
+
+            runner.run("detectConflicts", size, () -> planner.detectConflicts().size());
+            runner.run("getTodaysRevisions", size, () -> planner.getTodaysRevisions().size());
+            runner.run("generateProgressReport", size, () -> analytics.generateProgressReport(counters).size());
+            runner.run("export CSV", size, () -> {
+                exporter.export(data.state.tasks, "CSV", discard);
+                return data.state.tasks.size();
+            });
+            runner.run("export JSON", size, () -> {
+                exporter.export(data.state.tasks, "JSON", discard);
+                return data.state.tasks.size();
+            });
+            runner.run("isAvailableAt", size, () -> {
+                LocalDateTime start = data.nextTime();
+                return data.nextResource().isAvailableAt(start, start.plusHours(1)) ? 1 : 0;
+            });
+            // Searches and lookups run at several thread counts. Throughput should grow with the
+            // thread count, since readers never block each other.
+            for (int threads : READ_THREADS) {
+                runner.runConcurrent("searchTasks", size, threads, () -> planner.searchTasks(data.nextQuery()).size());
+                runner.runConcurrent("getTaskById", size, threads, () -> {
+                    StudyTask task = planner.getTaskById(data.nextTaskId());
+                    return task == null ? 0 : task.getId();
+                });
+            }
+        }
+        planner.installState(new PlannerState());
+        runner.printSink();
+    }
+}
+
+// ===================== BENCHMARK RUNNER =====================
+interface BenchmarkOp {
+    long run() throws Exception;
+}
+
+class BenchmarkRunner {
+    static final String HEADER = String.format("%-24s %9s %7s %14s %14s %12s",
+        "benchmark", "size", "threads", "ns/op", "ops/s", "B/op");
+    // Slow operations still get this many measured runs, however long they take.
+    private static final int MIN_OPS = 3;
+    private final long warmupMillis;
+    private final long measureMillis;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    // Results are folded in here so the JIT cannot discard the work being measured.
+    private final LongAdder sink = new LongAdder();
+
+    BenchmarkRunner(long warmupMillis, long measureMillis) {
+        this.warmupMillis = warmupMillis;
+        this.measureMillis = measureMillis;
+    }
+
+    public void run(String name, int size, BenchmarkOp op) throws Exception {
+        loop(op, warmupMillis);
+        long bytesBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long ops = loop(op, measureMillis);
+        long elapsed = System.nanoTime() - start;
+        long bytes = allocatedSince(bytesBefore);
+        report(name, size, 1, ops, elapsed, bytes);
+    }
+
+    // Every thread runs the operation for the same period; ns/op is wall time over total ops.
+    public void runConcurrent(String name, int size, int threadCount, BenchmarkOp op) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threadCount);
+        try {
+            CyclicBarrier barrier = new CyclicBarrier(threadCount + 1);
+            List<Future<long[]>> results = new ArrayList<>();
+            for (int i = 0; i < threadCount; i++) {
+                results.add(pool.submit(() -> {
+                    loop(op, warmupMillis);
+                    barrier.await();
+                    long bytesBefore = allocatedBytes();
+                    long ops = loop(op, measureMillis);
+                    return new long[] { ops, allocatedSince(bytesBefore) };
+                }));
+            }
+            barrier.await();
+            long start = System.nanoTime();
+            long ops = 0;
+            long bytes = 0;
+            for (Future<long[]> result : results) {
+                long[] counts = result.get();
+                ops += counts[0];
+                bytes = bytes < 0 || counts[1] < 0 ? -1 : bytes + counts[1];
+            }
+            report(name, size, threadCount, ops, System.nanoTime() - start, bytes);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    public void printSink() {
+        System.out.println("(sink " + sink.sum() + ")");
+    }
+
+    private long loop(BenchmarkOp op, long millis) throws Exception {
+        long deadline = System.nanoTime() + millis * 1_000_000;
+        long ops = 0;
+        do {
+            sink.add(op.run());
+            ops++;
+        } while (System.nanoTime() < deadline || ops < MIN_OPS);
+        return ops;
+    }
+
+    // Bytes allocated so far by the calling thread, or -1 if the JVM cannot tell.
+    private long allocatedBytes() {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) threads;
+            if (allocation.isThreadAllocatedMemorySupported() && allocation.isThreadAllocatedMemoryEnabled()) {
+                return allocation.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    private long allocatedSince(long before) {
+        return before < 0 ? -1 : allocatedBytes() - before;
+    }
+
+    private void report(String name, int size, int threadCount, long ops, long elapsedNanos, long bytes) {
+        double nsPerOp = (double) elapsedNanos / ops;
+        String bytesPerOp = bytes < 0 ? "n/a" : String.format("%.0f", (double) bytes / ops);
+        System.out.println(String.format("%-24s %9d %7d %14.1f %14.2f %12s",
+            name, size, threadCount, nsPerOp, 1e9 / nsPerOp, bytesPerOp));
+    }
+}
+
+// ===================== BENCHMARK DATA =====================
+// A reproducible planner state of a given size: that many tasks and sessions, one revision
+// plan per task, a resource per hundred sessions and a fixed group. Sessions are spread at
+// about eight a day, so conflicts stay as rare as in a real schedule.
+class BenchmarkData {
+    private static final String[] WORDS = {
+        "algebra", "biology", "chemistry", "calculus", "history", "physics", "geometry", "statistics",
+        "literature", "economics", "genetics", "optics", "grammar", "ethics", "databases", "networks"
+    };
+    private static final String[] SUBJECTS = { "Math", "Science", "Humanities", "Computing" };
+    private static final int LOOKUPS = 1024;
+
+    final PlannerState state = new PlannerState();
+    private final String[] queries = new String[LOOKUPS];
+    private final LocalDateTime[] times = new LocalDateTime[LOOKUPS];
+    private final int[] resourceSlots = new int[LOOKUPS];
+    private final int[] taskIds = new int[LOOKUPS];
+    // Each measuring thread walks the lookups with its own cursor, starting at a different
+    // slot, so threads neither share a contended field nor read the same inputs in step.
+    private final AtomicInteger threadStarts = new AtomicInteger();
+    private final ThreadLocal<int[]> cursor = ThreadLocal.withInitial(
+        () -> new int[] { threadStarts.getAndAdd(LOOKUPS / 8 + 1) & (LOOKUPS - 1) });
+
+    public static BenchmarkData generate(int size, long seed) {
+        BenchmarkData data = new BenchmarkData();
+        Random random = new Random(seed);
+        LocalDate today = LocalDate.now();
+        int days = Math.max(1, size / 8);
+        LocalDateTime firstDay = today.minusDays(days / 2).atStartOfDay();
+
+        for (int i = 0; i < 20; i++) {
+            data.state.addMember(new GroupMember("Member " + i, "member" + i + "@example.com", "Student"));
+        }
+        int resourceCount = Math.max(1, size / 100);
+        for (int i = 0; i < resourceCount; i++) {
+            data.state.addResource(new Classroom("Room " + i, 10 + random.nextInt(40), "Building " + (i % 10)));
+        }
+        for (int i = 0; i < size; i++) {
+            String title = word(random) + " " + word(random) + " " + i;
+            String description = "Review " + word(random) + " and " + word(random);
+            Difficulty difficulty = Difficulty.values()[random.nextInt(Difficulty.values().length)];
+            double hours = 1 + random.nextInt(8);
+            StudyTask task = random.nextInt(10) < 7
+                ? new Topic(title, description, difficulty, hours, SUBJECTS[random.nextInt(SUBJECTS.length)])
+                : new Assignment(title, description, difficulty, hours, today.plusDays(random.nextInt(60)));
+            task.addTag(word(random));
+            data.state.addTask(task);
+            data.state.revisionPlans.add(new RevisionPlan(task.getId(), today.plusDays(random.nextInt(31)),
+                1 + random.nextInt(5), today.minusDays(1 + random.nextInt(30)), random.nextInt(5)));
+        }
+        for (int i = 0; i < size; i++) {
+            StudyTask task = data.state.tasks.get(random.nextInt(size));
+            LocalDateTime start = firstDay.plusDays(random.nextInt(days)).plusHours(6 + random.nextInt(16))
+                .plusMinutes(15 * random.nextInt(4));
+            Session session = new StudySession(task.getId(), start, start.plusMinutes(30 + 15 * random.nextInt(7)), "Library");
+            session.getAssignedGroup().add(data.state.groupMembers.get(random.nextInt(data.state.groupMembers.size())));
+            if (random.nextBoolean()) {
+                Resource resource = data.state.resources.get(random.nextInt(resourceCount));
+                session.addResource(resource);
+                resource.addSession(session);
+            }
+            data.state.addSession(session);
+        }
+
+        for (int i = 0; i < LOOKUPS; i++) {
+            switch (i % 3) {
+                case 0: data.queries[i] = word(random); break;
+                case 1: data.queries[i] = word(random).substring(0, 3) + "*"; break;
+                default: data.queries[i] = "\"" + word(random) + " " + word(random) + "\""; break;
+            }
+            data.times[i] = firstDay.plusDays(random.nextInt(days)).plusHours(6 + random.nextInt(16));
+            data.resourceSlots[i] = random.nextInt(resourceCount);
+            data.taskIds[i] = data.state.tasks.get(random.nextInt(size)).getId();
+        }
+        return data;
+    }
+
+    public String nextQuery() {
+        return queries[next()];
+    }
+
+    public LocalDateTime nextTime() {
+        return times[next()];
+    }
+
+    public Resource nextResource() {
+        return state.resources.get(resourceSlots[next()]);
+    }
+
+    public int nextTaskId() {
+        return taskIds[next()];
+    }
+
+    private int next() {
+        int[] position = cursor.get();
+        int slot = position[0];
+        position[0] = (slot + 1) & (LOOKUPS - 1);
+        return slot;
+    }
+
+    private static String word(Random random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+}
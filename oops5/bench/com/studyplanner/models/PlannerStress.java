@@ -0,0 +1,308 @@
+package com.studyplanner.models;
+
+import java.io.*;
+import java.nio.file.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.studyplanner.models.*;
+
+// ===================== PLANNER STRESS TEST =====================
+// Hammers one journaled planner from many threads at once and then checks the invariants the
+// locking is meant to keep:
+//   - no lost inserts: every task and session whose add returned is in the planner, both live
+//     and after recovering the journal;
+//   - no duplicate admissions: under RejectConflictPolicy, each contended slot is won at most
+//     once and the finished schedule has no conflicts;
+//   - lock-free reads never miss: getTaskById finds every task already acknowledged, even
+//     while the id tables grow underneath it.
+// Writers add tasks one at a time and in batches. Contenders race for the same session slots
+// in different orders, which goes through sessionAdmissionLock. Readers poll the id tables,
+// and a checkpointer keeps taking checkpointLock's write side.
+//
+//   java -Xmx4g -cp bin com.studyplanner.models.PlannerStress [--threads n] [--seconds n]
+//
+// Exits with status 1 if any check fails.
+public class PlannerStress {
+    private static final int SLOTS = 20_000;
+    private static final int ROOMS = 8;
+    private static final int MAX_ACKED = 1 << 22;
+    private static final int BATCH = 64;
+
+    private final PlannerManager planner = PlannerManager.getInstance();
+    private final LocalDateTime firstSlot = LocalDate.now().atTime(8, 0);
+    private final List<Resource> rooms = new ArrayList<>();
+    // Ids of tasks whose add has returned, in acknowledgement order.
+    private final AtomicIntegerArray ackedTasks = new AtomicIntegerArray(MAX_ACKED);
+    private final AtomicInteger ackedTaskCount = new AtomicInteger();
+    private final AtomicIntegerArray slotWins = new AtomicIntegerArray(SLOTS);
+    private final AtomicIntegerArray slotWinners = new AtomicIntegerArray(SLOTS);
+    private final AtomicLong attempts = new AtomicLong();
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong readMisses = new AtomicLong();
+    private final AtomicLong checkpoints = new AtomicLong();
+    private final List<String> failures = Collections.synchronizedList(new ArrayList<>());
+    private volatile boolean running = true;
+
+    public static void main(String[] args) throws Exception {
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        int seconds = 10;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--threads")) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--seconds")) {
+                seconds = Integer.parseInt(args[++i]);
+            } else {
+                throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+        Logger.getInstance().setConsoleOutput(false);
+        Logger.getInstance().setLevel(LogLevel.WARN);
+        Path directory = Files.createTempDirectory("planner-stress");
+        boolean passed;
+        try {
+            passed = new PlannerStress().run(directory, threads, seconds);
+        } finally {
+            deleteDirectory(directory);
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    boolean run(Path directory, int threads, int seconds) throws Exception {
+        planner.installState(new PlannerState());
+        planner.setConflictPolicy(new RejectConflictPolicy());
+        planner.openJournal(directory, 5, 20_000);
+        for (int i = 0; i < ROOMS; i++) {
+            Resource room = new Classroom("Room " + i, 30, "Stress");
+            planner.addResource(room);
+            rooms.add(room);
+        }
+        Topic owner = new Topic("Stress owner", "Task every contended session belongs to", Difficulty.EASY, 1, "Stress");
+        planner.addTask(owner);
+        acknowledge(owner.getId());
+
+        int writers = Math.max(1, threads / 4);
+        int contenders = Math.max(2, threads / 2);
+        int readers = Math.max(1, threads - writers - contenders);
+        System.out.printf("%d writer(s), %d contender(s), %d reader(s), 1 checkpointer, %d s%n",
+            writers, contenders, readers, seconds);
+
+        ExecutorService pool = Executors.newFixedThreadPool(writers + contenders + readers + 1);
+        List<Future<?>> workers = new ArrayList<>();
+        long started = System.nanoTime();
+        for (int i = 0; i < writers; i++) {
+            int writer = i;
+            workers.add(pool.submit(() -> writeTasks(writer)));
+        }
+        for (int i = 0; i < contenders; i++) {
+            int contender = i;
+            workers.add(pool.submit(() -> contend(owner.getId(), contender)));
+        }
+        for (int i = 0; i < readers; i++) {
+            int reader = i;
+            workers.add(pool.submit(() -> read(reader)));
+        }
+        workers.add(pool.submit(this::checkpointLoop));
+        Thread.sleep(seconds * 1000L);
+        running = false;
+        for (Future<?> worker : workers) {
+            try {
+                worker.get();
+            } catch (ExecutionException e) {
+                fail("Worker failed: " + e.getCause());
+                e.getCause().printStackTrace();
+            }
+        }
+        pool.shutdown();
+        double elapsed = (System.nanoTime() - started) / 1e9;
+        System.out.printf("%d tasks, %d session attempts, %d reads, %d checkpoints in %.1f s%n",
+            ackedTaskCount.get(), attempts.get(), reads.get(), checkpoints.get(), elapsed);
+
+        verifyLive();
+        planner.syncJournal();
+        planner.closeJournal();
+        planner.installState(new PlannerState());
+        planner.openJournal(directory, 5, 20_000);
+        verifyRecovered();
+        planner.closeJournal();
+        planner.installState(new PlannerState());
+        planner.setConflictPolicy(new ReportConflictPolicy());
+
+        if (failures.isEmpty()) {
+            System.out.println("PASSED");
+            return true;
+        }
+        synchronized (failures) {
+            for (String failure : failures.subList(0, Math.min(20, failures.size()))) {
+                System.out.println("FAIL " + failure);
+            }
+        }
+        System.out.println("FAILED (" + failures.size() + " problem(s))");
+        return false;
+    }
+
+    // Alternates single adds with batches so both admission paths are exercised.
+    private void writeTasks(int writer) {
+        Random random = new Random(writer);
+        while (running && ackedTaskCount.get() < MAX_ACKED - BATCH) {
+            if (random.nextBoolean()) {
+                Topic task = newTask(writer, random);
+                planner.addTask(task);
+                acknowledge(task.getId());
+            } else {
+                List<StudyTask> batch = new ArrayList<>(BATCH);
+                for (int i = 0; i < BATCH; i++) {
+                    batch.add(newTask(writer, random));
+                }
+                BatchResult<StudyTask> result = planner.addTasks(batch);
+                if (!result.getErrors().isEmpty()) {
+                    fail("Batch rejected valid tasks: " + result.getErrors().get(0));
+                }
+                for (StudyTask task : result.getAccepted()) {
+                    acknowledge(task.getId());
+                }
+            }
+        }
+    }
+
+    private static Topic newTask(int writer, Random random) {
+        return new Topic("Stress task " + writer + "-" + random.nextInt(1000), "Written under load",
+            Difficulty.values()[random.nextInt(Difficulty.values().length)], 1 + random.nextInt(4), "Stress");
+    }
+
+    private void acknowledge(int taskId) {
+        int index = ackedTaskCount.getAndIncrement();
+        if (index < MAX_ACKED) {
+            ackedTasks.set(index, taskId);
+        }
+    }
+
+    // Every contender tries every slot: even ones walk forward and odd ones backward, so
+    // threads going the same way race for each slot in step and the two directions cross
+    // halfway. Each slot's session books a room as well.
+    private void contend(int taskId, int contender) {
+        for (int i = 0; i < SLOTS && running; i++) {
+            int slot = contender % 2 == 0 ? i : SLOTS - 1 - i;
+            LocalDateTime start = firstSlot.plusHours(slot);
+            Session session = new StudySession(taskId, start, start.plusMinutes(45), "Stress");
+            session.addResource(rooms.get(slot % ROOMS));
+            attempts.incrementAndGet();
+            if (planner.addSession(session)) {
+                if (slotWins.incrementAndGet(slot) > 1) {
+                    fail("Slot " + slot + " admitted twice (sessions " + slotWinners.get(slot) + " and " + session.getId() + ")");
+                }
+                slotWinners.set(slot, session.getId());
+            }
+        }
+    }
+
+    // Looks up recently acknowledged tasks, where a torn table resize would show first.
+    private void read(int reader) {
+        Random random = new Random(1000 + reader);
+        while (running) {
+            int acknowledged = Math.min(ackedTaskCount.get(), MAX_ACKED);
+            if (acknowledged == 0) {
+                continue;
+            }
+            int index = Math.max(0, acknowledged - 1 - random.nextInt(Math.min(acknowledged, 4096)));
+            int taskId = ackedTasks.get(index);
+            if (taskId == 0) {
+                // Claimed but not yet recorded by its writer.
+                continue;
+            }
+            reads.incrementAndGet();
+            if (planner.getTaskById(taskId) == null) {
+                readMisses.incrementAndGet();
+                fail("getTaskById(" + taskId + ") missed an acknowledged task");
+            }
+        }
+    }
+
+    private void checkpointLoop() {
+        while (running) {
+            try {
+                planner.checkpoint();
+                checkpoints.incrementAndGet();
+                Thread.sleep(250);
+            } catch (IOException e) {
+                fail("Checkpoint failed: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void verifyLive() {
+        int acknowledged = Math.min(ackedTaskCount.get(), MAX_ACKED);
+        checkTasks("live", acknowledged);
+        checkSessions("live");
+        List<String> conflicts = planner.detectConflicts();
+        if (!conflicts.isEmpty()) {
+            fail("Schedule has " + conflicts.size() + " conflict(s), e.g. " + conflicts.get(0));
+        }
+        System.out.printf("live: %d read misses, %d conflicts%n", readMisses.get(), conflicts.size());
+    }
+
+    private void verifyRecovered() {
+        checkTasks("recovered", Math.min(ackedTaskCount.get(), MAX_ACKED));
+        checkSessions("recovered");
+    }
+
+    private void checkTasks(String stage, int acknowledged) {
+        int missing = 0;
+        for (int i = 0; i < acknowledged; i++) {
+            if (planner.getTaskById(ackedTasks.get(i)) == null) {
+                missing++;
+            }
+        }
+        int held = planner.getTasks().size();
+        if (missing > 0 || held != acknowledged) {
+            fail(stage + ": " + missing + " acknowledged task(s) missing, " + held + " held for " + acknowledged + " acknowledged");
+        }
+        System.out.printf("%s: %d/%d tasks%n", stage, acknowledged - missing, acknowledged);
+    }
+
+    private void checkSessions(String stage) {
+        int won = 0;
+        int missing = 0;
+        for (int slot = 0; slot < SLOTS; slot++) {
+            if (slotWins.get(slot) == 0) {
+                continue;
+            }
+            won++;
+            if (planner.getSessionById(slotWinners.get(slot)) == null) {
+                missing++;
+            }
+        }
+        int held = planner.getSessions().size();
+        if (missing > 0 || held != won) {
+            fail(stage + ": " + missing + " admitted session(s) missing, " + held + " held for " + won + " admitted");
+        }
+        int booked = 0;
+        for (Resource room : planner.getResources()) {
+            booked += room.getAssignedSessions().size();
+        }
+        if (booked != won) {
+            fail(stage + ": rooms hold " + booked + " booking(s) for " + won + " admitted session(s)");
+        }
+        System.out.printf("%s: %d/%d sessions, %d room bookings%n", stage, won - missing, won, booked);
+    }
+
+    private void fail(String message) {
+        failures.add(message);
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(directory);
+    }
+}
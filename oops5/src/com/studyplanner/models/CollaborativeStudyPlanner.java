@@ -1,10 +1,14 @@
 package com.studyplanner.models;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
 import com.studyplanner.models.*;
 
@@ -13,10 +17,15 @@ public class CollaborativeStudyPlanner {
     private static final Scanner scanner = new Scanner(System.in);
     private static final PlannerManager planner = PlannerManager.getInstance();
     private static final Logger logger = Logger.getInstance();
+    // Where the planner journals its changes; override with -Dstudyplanner.journal.dir=<dir>.
+    private static final String JOURNAL_DIR = System.getProperty("studyplanner.journal.dir", "planner-journal");
     
     public static void main(String[] args) {
         System.out.println("Welcome to Collaborative Study Planner!");
-        loadSampleData();
+        openJournal();
+        if (planner.getTasks().isEmpty()) {
+            loadSampleData();
+        }
 
         boolean running = true;
         while (running) {
@@ -46,9 +55,28 @@ public class CollaborativeStudyPlanner {
                 logger.log("Error in main menu: " + e.getMessage());
             }
         }
+        try {
+            planner.shutdown();
+        } catch (IOException e) {
+            System.out.println("Error closing journal: " + e.getMessage());
+            logger.log("Error closing journal: " + e.getMessage());
+        }
         scanner.close();
     }
 
+    // Recovers the previous run's plan from the journal directory, if there is one.
+    private static void openJournal() {
+        try {
+            planner.openJournal(Paths.get(JOURNAL_DIR), 50, 10_000);
+            if (!planner.getTasks().isEmpty()) {
+                System.out.println("Restored " + planner.getTasks().size() + " task(s) from: " + JOURNAL_DIR);
+            }
+        } catch (IOException e) {
+            System.out.println("Journal unavailable, changes will not be kept: " + e.getMessage());
+            logger.log("Error opening journal: " + e.getMessage());
+        }
+    }
+
     private static void loadSampleData() {
         // Add sample group members
         GroupMember alice = new GroupMember("Alice", "alice@email.com", "Leader");
@@ -167,9 +195,44 @@ public class CollaborativeStudyPlanner {
         System.out.print("Location: ");
         String location = scanner.nextLine();
         
+        Resource resource = null;
+        List<Resource> resources = planner.getResources();
+        if (!resources.isEmpty()) {
+            System.out.println("Available resources:");
+            for (int i = 0; i < resources.size(); i++) {
+                System.out.println((i + 1) + ". " + resources.get(i).getName() + " (" + resources.get(i).getType() + ")");
+            }
+            System.out.print("Book resource (number, 0 for none): ");
+            int resourceIndex = Integer.parseInt(scanner.nextLine()) - 1;
+            if (resourceIndex >= 0 && resourceIndex < resources.size()) {
+                resource = resources.get(resourceIndex);
+            }
+        }
+        if (resource != null && !resource.isAvailableAt(startTime, endTime)) {
+            LocalDateTime freeSlot = resource.findNextFreeSlot(Duration.between(startTime, endTime), startTime);
+            if (freeSlot == null) {
+                System.out.println(resource.getName() + " is not available for booking.");
+                return;
+            }
+            System.out.println(resource.getName() + " is busy then. Next free slot: "
+                + freeSlot.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")));
+            System.out.print("Schedule at the free slot instead? (y/n): ");
+            if (!scanner.nextLine().trim().equalsIgnoreCase("y")) {
+                return;
+            }
+            endTime = freeSlot.plus(Duration.between(startTime, endTime));
+            startTime = freeSlot;
+        }
+        
         Session session = SessionFactory.createSession("STUDY", selectedTask.getId(), startTime, endTime, location);
-        planner.addSession(session);
-        System.out.println("Session scheduled successfully!");
+        if (resource != null) {
+            session.addResource(resource);
+        }
+        if (planner.addSession(session)) {
+            System.out.println("Session scheduled successfully!");
+        } else {
+            System.out.println("Session was not scheduled. Check the logs for details.");
+        }
     }
 
     private static void groupPlanning() {
@@ -251,10 +314,23 @@ public class CollaborativeStudyPlanner {
             for (String conflict : conflicts) {
                 System.out.println("- " + conflict);
             }
-            System.out.println("\nAuto-resolution recommendations:");
-            System.out.println("1. Reschedule overlapping sessions");
-            System.out.println("2. Reallocate resources");
-            System.out.println("3. Split group assignments");
+            List<SessionMove> moves = planner.proposeReschedule();
+            if (moves.isEmpty()) {
+                System.out.println("\nNo free slots found for the conflicting sessions.");
+                return;
+            }
+            System.out.println("\nProposed moves (" + moves.size() + "):");
+            for (SessionMove move : moves.subList(0, Math.min(10, moves.size()))) {
+                System.out.println("- " + move);
+            }
+            if (moves.size() > 10) {
+                System.out.println("... and " + (moves.size() - 10) + " more");
+            }
+            System.out.print("Apply these moves? (y/n): ");
+            if (scanner.nextLine().trim().equalsIgnoreCase("y")) {
+                int applied = planner.applyReschedule(moves);
+                System.out.println(applied + " session(s) rescheduled.");
+            }
         }
     }
 
@@ -276,6 +352,10 @@ public class CollaborativeStudyPlanner {
         if (todoCount > inProgressCount * 2) {
             System.out.println("- Consider starting more tasks to balance your workload");
         }
+        StudyTask next = planner.getNextTask();
+        if (next != null) {
+            System.out.println("- Ready to start next: " + next.getTitle() + " (" + next.getDifficulty() + ")");
+        }
         
         List<StudyTask> hardTasks = tasks.stream()
             .filter(t -> t.getDifficulty() == Difficulty.HARD || t.getDifficulty() == Difficulty.EXPERT)
@@ -290,16 +370,35 @@ public class CollaborativeStudyPlanner {
     private static void exportData() {
         System.out.println("\nEXPORT/BACKUP PLANS & LOGS");
         System.out.println("-".repeat(30));
-        System.out.print("Export format (CSV/JSON): ");
+        System.out.print("Export format (CSV/JSON/SNAPSHOT): ");
         String format = scanner.nextLine().toUpperCase();
-        String exportData = planner.exportData(format);
-        System.out.print("Save to file (filename): ");
+        System.out.print("Save to file (filename, .gz to compress): ");
         String filename = scanner.nextLine();
         
-        try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
-            writer.print(exportData);
+        if ("SNAPSHOT".equals(format)) {
+            planner.saveToFile(filename);
+            System.out.println("Snapshot saved to: " + filename);
+            return;
+        }
+        System.out.print("Export 1. Tasks, 2. Sessions or 3. Changes since a version: ");
+        int what = getChoice();
+        try {
+            if (what == 3) {
+                System.out.print("Since version (0 for everything): ");
+                long since = Long.parseLong(scanner.nextLine().trim());
+                OutputStream stream = Files.newOutputStream(Paths.get(filename));
+                try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                        filename.endsWith(".gz") ? new GZIPOutputStream(stream) : stream, StandardCharsets.UTF_8))) {
+                    long watermark = planner.exportChangesSince(since, format, out);
+                    System.out.println("Next export since version: " + watermark);
+                }
+            } else if (what == 2) {
+                planner.exportSessions(format, Paths.get(filename), filename.endsWith(".gz"));
+            } else {
+                planner.exportData(format, Paths.get(filename), filename.endsWith(".gz"));
+            }
             System.out.println("Data exported to: " + filename);
-        } catch (IOException e) {
+        } catch (IOException | NumberFormatException e) {
             System.out.println("Error exporting data: " + e.getMessage());
         }
     }
@@ -307,9 +406,22 @@ public class CollaborativeStudyPlanner {
     private static void importData() {
         System.out.println("\nIMPORT/RESTORE PLANS & LOGS");
         System.out.println("-".repeat(30));
-        System.out.print("Import from file (filename): ");
+        System.out.print("Import from file (.csv/.json export or snapshot): ");
         String filename = scanner.nextLine();
         
+        String name = filename.toLowerCase().replaceFirst("\\.gz$", "");
+        if (name.endsWith(".csv") || name.endsWith(".json")) {
+            try {
+                StudyPlanImporter result = planner.importData(Paths.get(filename));
+                System.out.println("Imported " + result);
+                List<ValidationError> errors = new ArrayList<>(result.getTasks().getErrors());
+                errors.addAll(result.getSessions().getErrors());
+                errors.stream().limit(10).forEach(error -> System.out.println("  " + error));
+            } catch (IOException | IllegalArgumentException e) {
+                System.out.println("Error importing data: " + e.getMessage());
+            }
+            return;
+        }
         try {
             planner.loadFromFile(filename);
             System.out.println("Data imported successfully from: " + filename);
@@ -325,6 +437,8 @@ public class CollaborativeStudyPlanner {
         System.out.println("2. View Logs");
         System.out.println("3. Clear Logs");
         System.out.println("4. Change Revision Algorithm");
+        System.out.println("5. Change Conflict Policy");
+        System.out.println("6. Performance Metrics");
         System.out.print("Choose option: ");
         int choice = getChoice();
         
@@ -336,8 +450,8 @@ public class CollaborativeStudyPlanner {
                 break;
             case 2:
                 System.out.println("\nRecent Logs:");
-                List<String> logs = logger.getLogs();
-                logs.stream().limit(10).forEach(System.out::println);
+                logger.flush();
+                logger.getRecentLogs(10).forEach(System.out::println);
                 break;
             case 3:
                 logger.clearLogs();
@@ -355,6 +469,27 @@ public class CollaborativeStudyPlanner {
                 }
                 System.out.println("Revision algorithm updated!");
                 break;
+            case 5:
+                System.out.println("1. Report conflicts and schedule anyway");
+                System.out.println("2. Reject conflicting sessions");
+                System.out.print("Choose policy: ");
+                int policyChoice = getChoice();
+                if (policyChoice == 1) {
+                    planner.setConflictPolicy(new ReportConflictPolicy());
+                } else if (policyChoice == 2) {
+                    planner.setConflictPolicy(new RejectConflictPolicy());
+                }
+                System.out.println("Conflict policy updated!");
+                break;
+            case 6:
+                PlannerMetrics metrics = planner.getMetrics();
+                System.out.println(metrics.format());
+                System.out.print("Metrics are " + (metrics.isEnabled() ? "on" : "off") + ". Toggle? (y/n): ");
+                if (scanner.nextLine().trim().equalsIgnoreCase("y")) {
+                    metrics.setEnabled(!metrics.isEnabled());
+                    System.out.println("Metrics " + (metrics.isEnabled() ? "enabled" : "disabled") + ".");
+                }
+                break;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,542 @@
+package com.studyplanner.models;
+
+import java.io.*;
+import java.time.*;
+import java.util.*;
+
+import com.studyplanner.models.*;
+
+// ===================== STREAMING TEXT PARSER =====================
+// Character source for the import parsers. The input is read in fixed-size chunks, so memory
+// stays flat however large the file is, and the current line is kept for error messages.
+abstract class StreamingTextParser {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private final Reader in;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private int line = 1;
+
+    protected StreamingTextParser(Reader in) {
+        this.in = in;
+    }
+
+    // The next character without consuming it, or -1 at the end of the input.
+    protected int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    protected int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        char c = buffer[position++];
+        if (c == '\n') {
+            line++;
+        }
+        return c;
+    }
+
+    private boolean fill() throws IOException {
+        int count;
+        do {
+            count = in.read(buffer, 0, buffer.length);
+        } while (count == 0);
+        if (count < 0) {
+            return false;
+        }
+        position = 0;
+        limit = count;
+        return true;
+    }
+
+    public int getLine() { return line; }
+
+    protected IOException error(String message) {
+        return new IOException(message + " at line " + line);
+    }
+}
+
+// ===================== CSV RECORD READER =====================
+// RFC 4180 records: fields are split on commas, and quoted fields may hold commas, doubled
+// quotes and line breaks. The field list is reused from one record to the next.
+class CsvRecordReader extends StreamingTextParser {
+    private final List<String> fields = new ArrayList<>();
+    private final StringBuilder field = new StringBuilder();
+
+    CsvRecordReader(Reader in) {
+        super(in);
+    }
+
+    // The next record's fields, or null at the end of the input. Blank lines are skipped.
+    public List<String> next() throws IOException {
+        fields.clear();
+        int c = read();
+        while (c == '\r' || c == '\n') {
+            c = read();
+        }
+        if (c == -1) {
+            return null;
+        }
+        while (true) {
+            field.setLength(0);
+            if (c == '"') {
+                while (true) {
+                    c = read();
+                    if (c == -1) {
+                        throw error("Unterminated quoted field");
+                    }
+                    if (c != '"') {
+                        field.append((char) c);
+                    } else if (peek() == '"') {
+                        field.append((char) read());
+                    } else {
+                        c = read();
+                        break;
+                    }
+                }
+            } else {
+                while (c != ',' && c != '\n' && c != '\r' && c != -1) {
+                    field.append((char) c);
+                    c = read();
+                }
+            }
+            fields.add(field.toString());
+            if (c == ',') {
+                c = read();
+            } else if (c == '\n' || c == '\r' || c == -1) {
+                return fields;
+            } else {
+                throw error("Unexpected '" + (char) c + "' after quoted field");
+            }
+        }
+    }
+}
+
+// ===================== JSON PULL PARSER =====================
+// The caller pulls one token at a time, so a large array is consumed element by element
+// instead of being built into a tree first. Numbers and literals are returned as their text.
+class JsonPullParser extends StreamingTextParser {
+    enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, LITERAL, END
+    }
+
+    private final StringBuilder text = new StringBuilder();
+    // One entry per open container: true for an object, false for an array.
+    private final BitSet objects = new BitSet();
+    private int depth;
+    private boolean expectName;
+    private String value;
+
+    JsonPullParser(Reader in) {
+        super(in);
+    }
+
+    public Token next() throws IOException {
+        int c = read();
+        while (c == ',' || c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+            c = read();
+        }
+        value = null;
+        switch (c) {
+            case -1:
+                if (depth > 0) {
+                    throw error("Unexpected end of JSON");
+                }
+                return Token.END;
+            case '{':
+                objects.set(depth++);
+                expectName = true;
+                return Token.BEGIN_OBJECT;
+            case '[':
+                objects.clear(depth++);
+                return Token.BEGIN_ARRAY;
+            case '}':
+            case ']':
+                boolean object = c == '}';
+                if (depth == 0 || objects.get(depth - 1) != object) {
+                    throw error("Unexpected '" + (char) c + "'");
+                }
+                depth--;
+                valueDone();
+                return object ? Token.END_OBJECT : Token.END_ARRAY;
+            case '"':
+                value = readString();
+                if (expectName && inObject()) {
+                    expectName = false;
+                    int colon = read();
+                    while (colon == ' ' || colon == '\n' || colon == '\r' || colon == '\t') {
+                        colon = read();
+                    }
+                    if (colon != ':') {
+                        throw error("Expected ':' after \"" + value + "\"");
+                    }
+                    return Token.NAME;
+                }
+                valueDone();
+                return Token.STRING;
+            default:
+                value = readBare(c);
+                valueDone();
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    return Token.NUMBER;
+                }
+                if (value.equals("null")) {
+                    value = null;
+                } else if (!value.equals("true") && !value.equals("false")) {
+                    throw error("Unexpected '" + value + "'");
+                }
+                return Token.LITERAL;
+        }
+    }
+
+    // Text of the last NAME, STRING, NUMBER or LITERAL token; null for the null literal.
+    public String getText() {
+        return value;
+    }
+
+    // Skips the value that starts with the given token, including everything nested in it.
+    public void skipValue(Token first) throws IOException {
+        if (first != Token.BEGIN_OBJECT && first != Token.BEGIN_ARRAY) {
+            return;
+        }
+        int target = depth - 1;
+        while (depth > target) {
+            if (next() == Token.END) {
+                throw error("Unexpected end of JSON");
+            }
+        }
+    }
+
+    private boolean inObject() {
+        return depth > 0 && objects.get(depth - 1);
+    }
+
+    private void valueDone() {
+        if (inObject()) {
+            expectName = true;
+        }
+    }
+
+    private String readString() throws IOException {
+        text.setLength(0);
+        while (true) {
+            int c = read();
+            if (c == '"') {
+                return text.toString();
+            }
+            if (c == -1) {
+                throw error("Unterminated string");
+            }
+            if (c == '\\') {
+                c = read();
+                switch (c) {
+                    case 'n': c = '\n'; break;
+                    case 'r': c = '\r'; break;
+                    case 't': c = '\t'; break;
+                    case 'b': c = '\b'; break;
+                    case 'f': c = '\f'; break;
+                    case 'u': c = readHex(); break;
+                    case '"': case '\\': case '/': break;
+                    default: throw error("Invalid escape in string");
+                }
+            }
+            text.append((char) c);
+        }
+    }
+
+    private int readHex() throws IOException {
+        int code = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(read(), 16);
+            if (digit < 0) {
+                throw error("Invalid \\u escape");
+            }
+            code = code * 16 + digit;
+        }
+        return code;
+    }
+
+    private String readBare(int first) throws IOException {
+        text.setLength(0);
+        text.append((char) first);
+        int c = peek();
+        while (c != -1 && c != ',' && c != '}' && c != ']' && c != ':' && c != '"' && !Character.isWhitespace(c)) {
+            text.append((char) read());
+            c = peek();
+        }
+        return text.toString();
+    }
+}
+
+// ===================== STUDY PLAN IMPORTER =====================
+// Loads what StudyPlanExporter and SessionPlanExporter write, reading one record at a time and
+// handing records to the planner in fixed-size batches, so validation and indexing run in
+// bulk while memory stays bounded. CSV columns are matched by header name; a task without a
+// Type column becomes a topic. Records keep their ids, so sessions still point at their
+// tasks. A record whose id is taken or whose fields cannot be read is reported as an error
+// for its position in the file; a file that is not valid CSV or JSON stops the import.
+class StudyPlanImporter {
+    static final int BATCH_SIZE = 4096;
+    // Ids index dense tables, so an id may run at most this far past the highest one issued.
+    static final int ID_HEADROOM = 256 * BATCH_SIZE;
+    private final PlannerManager planner;
+    private final BatchResult<StudyTask> tasks = new BatchResult<>();
+    private final BatchResult<Session> sessions = new BatchResult<>();
+    private final List<StudyTask> taskBatch = new ArrayList<>(BATCH_SIZE);
+    private final List<Session> sessionBatch = new ArrayList<>(BATCH_SIZE);
+    private final int[] taskRecords = new int[BATCH_SIZE];
+    private final int[] sessionRecords = new int[BATCH_SIZE];
+    private final Set<Integer> batchTaskIds = new HashSet<>();
+    private final Set<Integer> batchSessionIds = new HashSet<>();
+    // The record being mapped: field values by lower-cased name, and JSON tags if present.
+    private final Map<String, String> record = new HashMap<>();
+    private final List<String> tags = new ArrayList<>();
+    private boolean tagsRead;
+    private int records;
+
+    StudyPlanImporter(PlannerManager planner) {
+        this.planner = planner;
+    }
+
+    public void read(Reader in, String format) throws IOException {
+        if ("CSV".equalsIgnoreCase(format)) {
+            readCsv(new CsvRecordReader(in));
+        } else if ("JSON".equalsIgnoreCase(format)) {
+            readJson(new JsonPullParser(in));
+        } else {
+            throw new IllegalArgumentException("Unsupported import format: " + format);
+        }
+        flushTasks();
+        flushSessions();
+        tasks.getErrors().sort(Comparator.comparingInt(ValidationError::getIndex));
+        sessions.getErrors().sort(Comparator.comparingInt(ValidationError::getIndex));
+    }
+
+    public BatchResult<StudyTask> getTasks() { return tasks; }
+    public BatchResult<Session> getSessions() { return sessions; }
+    public int getRecordCount() { return records; }
+
+    private void readCsv(CsvRecordReader reader) throws IOException {
+        List<String> header = reader.next();
+        if (header == null) {
+            return;
+        }
+        String[] names = new String[header.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = header.get(i).trim().toLowerCase();
+        }
+        boolean sessionRows = Arrays.asList(names).contains("taskid");
+        List<String> fields;
+        while ((fields = reader.next()) != null) {
+            record.clear();
+            tagsRead = false;
+            for (int i = 0; i < fields.size() && i < names.length; i++) {
+                record.put(names[i], fields.get(i));
+            }
+            addRecord(sessionRows);
+        }
+    }
+
+    // Accepts {"tasks": [...], "sessions": [...]} as exported, or a bare array of records;
+    // elements with a taskId are sessions.
+    private void readJson(JsonPullParser parser) throws IOException {
+        JsonPullParser.Token token = parser.next();
+        if (token == JsonPullParser.Token.BEGIN_ARRAY) {
+            readJsonArray(parser, null);
+        } else if (token == JsonPullParser.Token.BEGIN_OBJECT) {
+            while ((token = parser.next()) == JsonPullParser.Token.NAME) {
+                String name = parser.getText();
+                token = parser.next();
+                if (token == JsonPullParser.Token.BEGIN_ARRAY && (name.equals("tasks") || name.equals("sessions"))) {
+                    readJsonArray(parser, name.equals("sessions"));
+                } else {
+                    parser.skipValue(token);
+                }
+            }
+        } else if (token != JsonPullParser.Token.END) {
+            throw parser.error("Expected a JSON object or array");
+        }
+    }
+
+    private void readJsonArray(JsonPullParser parser, Boolean sessionRows) throws IOException {
+        JsonPullParser.Token token;
+        while ((token = parser.next()) != JsonPullParser.Token.END_ARRAY) {
+            if (token != JsonPullParser.Token.BEGIN_OBJECT) {
+                throw parser.error("Expected a record object");
+            }
+            record.clear();
+            tags.clear();
+            tagsRead = false;
+            while ((token = parser.next()) == JsonPullParser.Token.NAME) {
+                String name = parser.getText().toLowerCase();
+                token = parser.next();
+                if (token == JsonPullParser.Token.BEGIN_ARRAY && name.equals("tags")) {
+                    tagsRead = true;
+                    while ((token = parser.next()) != JsonPullParser.Token.END_ARRAY) {
+                        parser.skipValue(token);
+                        if (token == JsonPullParser.Token.STRING) {
+                            tags.add(parser.getText());
+                        }
+                    }
+                } else if (token == JsonPullParser.Token.BEGIN_OBJECT || token == JsonPullParser.Token.BEGIN_ARRAY) {
+                    parser.skipValue(token);
+                } else {
+                    record.put(name, parser.getText());
+                }
+            }
+            addRecord(sessionRows != null ? sessionRows : record.containsKey("taskid"));
+        }
+    }
+
+    private void addRecord(boolean session) {
+        int index = records++;
+        String id = record.get("id");
+        try {
+            if (session) {
+                Session mapped = toSession();
+                if (planner.getSessionById(mapped.getId()) != null || !batchSessionIds.add(mapped.getId())) {
+                    throw new IllegalArgumentException("Session ID " + mapped.getId() + " already exists");
+                }
+                sessionRecords[sessionBatch.size()] = index;
+                sessionBatch.add(mapped);
+                if (sessionBatch.size() == BATCH_SIZE) {
+                    flushTasks();
+                    flushSessions();
+                }
+            } else {
+                StudyTask mapped = toTask();
+                if (planner.getTaskById(mapped.getId()) != null || !batchTaskIds.add(mapped.getId())) {
+                    throw new IllegalArgumentException("Task ID " + mapped.getId() + " already exists");
+                }
+                taskRecords[taskBatch.size()] = index;
+                taskBatch.add(mapped);
+                if (taskBatch.size() == BATCH_SIZE) {
+                    flushTasks();
+                }
+            }
+        } catch (IllegalArgumentException | DateTimeException e) {
+            int entityId = -1;
+            try {
+                entityId = Integer.parseInt(id.trim());
+            } catch (RuntimeException ignored) {
+            }
+            ValidationError error = new ValidationError(index, entityId, Collections.singletonList(e.getMessage()));
+            if (session) {
+                sessions.reject(error);
+            } else {
+                tasks.reject(error);
+            }
+        }
+    }
+
+    private StudyTask toTask() {
+        int id = parseId(StudyTask.idCounter.get());
+        String title = record.get("title");
+        String description = record.get("description");
+        Difficulty difficulty = Difficulty.valueOf(required("difficulty").trim());
+        double hours = Double.parseDouble(required("estimatedhours").trim());
+        StudyTask task;
+        if ("ASSIGNMENT".equalsIgnoreCase(optional("type"))) {
+            String due = optional("duedate");
+            task = new Assignment(id, title, description, difficulty, hours, due == null ? null : LocalDate.parse(due));
+        } else {
+            task = new Topic(id, title, description, difficulty, hours, optional("subject"));
+        }
+        String status = optional("status");
+        if (status != null) {
+            task.status = TaskStatus.valueOf(status);
+        }
+        String created = optional("createddate");
+        if (created != null) {
+            task.createdDate = LocalDate.parse(created);
+        }
+        if (tagsRead) {
+            task.tags.addAll(tags);
+        } else {
+            String joined = optional("tags");
+            if (joined != null) {
+                for (String tag : joined.split(";")) {
+                    if (!tag.isEmpty()) {
+                        task.tags.add(tag);
+                    }
+                }
+            }
+        }
+        return task;
+    }
+
+    private Session toSession() {
+        int id = parseId(Session.idCounter.get());
+        int taskId = Integer.parseInt(required("taskid").trim());
+        LocalDateTime start = LocalDateTime.parse(required("starttime").trim());
+        LocalDateTime end = LocalDateTime.parse(required("endtime").trim());
+        String location = record.get("location");
+        Session session = new StudySession(id, taskId, start, end, location == null || location.isEmpty() ? null : location);
+        String recurrence = optional("recurrence");
+        if (recurrence != null) {
+            session.setRecurrence(recurrence);
+        }
+        String status = optional("status");
+        if (status != null) {
+            session.status = SessionStatus.valueOf(status);
+        }
+        return session;
+    }
+
+    private int parseId(int nextId) {
+        int id = Integer.parseInt(required("id").trim());
+        if (id <= 0 || id > Math.max(nextId, 1) - 1L + ID_HEADROOM) {
+            throw new IllegalArgumentException("ID " + id + " is out of range");
+        }
+        return id;
+    }
+
+    private String required(String field) {
+        String value = record.get(field);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Missing " + field);
+        }
+        return value;
+    }
+
+    // Null for a missing or empty field, which is how exports write absent values.
+    private String optional(String field) {
+        String value = record.get(field);
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    private void flushTasks() {
+        if (taskBatch.isEmpty()) {
+            return;
+        }
+        BatchResult<StudyTask> result = planner.addTasks(taskBatch);
+        result.getAccepted().forEach(tasks::accept);
+        for (ValidationError error : result.getErrors()) {
+            tasks.reject(new ValidationError(taskRecords[error.getIndex()], error.getEntityId(), error.getMessages()));
+        }
+        taskBatch.clear();
+        batchTaskIds.clear();
+    }
+
+    private void flushSessions() {
+        if (sessionBatch.isEmpty()) {
+            return;
+        }
+        BatchResult<Session> result = planner.addSessions(sessionBatch);
+        result.getAccepted().forEach(sessions::accept);
+        for (ValidationError error : result.getErrors()) {
+            sessions.reject(new ValidationError(sessionRecords[error.getIndex()], error.getEntityId(), error.getMessages()));
+        }
+        sessionBatch.clear();
+        batchSessionIds.clear();
+    }
+
+    @Override
+    public String toString() {
+        return records + " records: tasks " + tasks + ", sessions " + sessions;
+    }
+}
@@ -0,0 +1,1964 @@
+package com.studyplanner.models;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+
+import com.studyplanner.models.*;
+
+// ===================== ID INDEX =====================
+// Direct-address table for the dense int ids handed out by the entity id counters.
+// Reads are lock-free: slots are published with release stores and the table is only
+// ever replaced by a larger copy, so a reader sees either the old or the new value.
+class IntIndex<T> implements Iterable<T> {
+    private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(Object[].class);
+    private volatile Object[] slots = new Object[16];
+    private volatile int size;
+
+    public T get(int id) {
+        Object[] table = slots;
+        return id >= 0 && id < table.length ? cast(SLOT.getAcquire(table, id)) : null;
+    }
+
+    public synchronized T put(int id, T value) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Ids must not be negative: " + id);
+        }
+        Object[] table = slots;
+        if (id >= table.length) {
+            table = Arrays.copyOf(table, Math.max(id + 1, table.length * 2));
+            slots = table;
+        }
+        T previous = cast(table[id]);
+        SLOT.setRelease(table, id, value);
+        if (previous == null) {
+            size++;
+        }
+        return previous;
+    }
+
+    public synchronized T remove(int id) {
+        T previous = get(id);
+        if (previous != null) {
+            SLOT.setRelease(slots, id, null);
+            size--;
+        }
+        return previous;
+    }
+
+    public boolean contains(int id) {
+        return get(id) != null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        slots = new Object[16];
+        size = 0;
+    }
+
+    // Point-in-time copy of the values in id order.
+    public List<T> values() {
+        List<T> values = new ArrayList<>(size);
+        for (T value : this) {
+            values.add(value);
+        }
+        return values;
+    }
+
+    // Values in id order. Weakly consistent: never fails on concurrent updates, and may or may
+    // not reflect ones made after it was created.
+    @Override
+    public Iterator<T> iterator() {
+        Object[] table = slots;
+        return new Iterator<T>() {
+            private int next = -1;
+            private T value = advance();
+
+            private T advance() {
+                while (++next < table.length) {
+                    T found = cast(SLOT.getAcquire(table, next));
+                    if (found != null) {
+                        return found;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return value != null;
+            }
+
+            @Override
+            public T next() {
+                if (value == null) {
+                    throw new NoSuchElementException();
+                }
+                T current = value;
+                value = advance();
+                return current;
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T cast(Object value) {
+        return (T) value;
+    }
+}
+
+// ===================== INTERVAL TREE =====================
+// Treap ordered by (start, key) and augmented with the maximum end of each subtree,
+// so overlap and range queries only descend into subtrees that can still match.
+class IntervalTree<T> implements Iterable<T> {
+    private static final class Node<T> {
+        final long start;
+        final long end;
+        final int key;
+        final T value;
+        final long priority;
+        Node<T> left;
+        Node<T> right;
+        long maxEnd;
+        int size;
+
+        Node(long start, long end, int key, T value) {
+            this.start = start;
+            this.end = end;
+            this.key = key;
+            this.value = value;
+            this.priority = mix(start * 31 + key);
+            this.maxEnd = end;
+            this.size = 1;
+        }
+    }
+
+    private Node<T> root;
+
+    public void insert(long start, long end, int key, T value) {
+        root = insert(root, new Node<>(start, end, key, value));
+    }
+
+    public boolean remove(long start, int key) {
+        int before = size();
+        root = remove(root, start, key);
+        return size() < before;
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    public void clear() {
+        root = null;
+    }
+
+    // True if any stored interval [start, end) intersects [from, to).
+    public boolean anyOverlap(long from, long to) {
+        Node<T> node = root;
+        while (node != null) {
+            if (node.start < to && node.end > from) {
+                return true;
+            }
+            if (node.left != null && node.left.maxEnd > from) {
+                node = node.left;
+            } else if (node.start < to) {
+                node = node.right;
+            } else {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    // Lazily yields every stored value whose interval intersects [from, to), in start order.
+    public Iterator<T> overlapping(long from, long to) {
+        return new OverlapIterator<>(root, from, to);
+    }
+
+    // Earliest t >= notBefore such that [t, t + length) intersects no stored interval.
+    public long nextGap(long notBefore, long length) {
+        long candidate = notBefore;
+        Iterator<Node<T>> busy = new NodeIterator<>(root, notBefore, Long.MAX_VALUE);
+        while (busy.hasNext()) {
+            Node<T> node = busy.next();
+            if (node.start >= candidate + length) {
+                break;
+            }
+            candidate = Math.max(candidate, node.end);
+        }
+        return candidate;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return overlapping(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    private Node<T> insert(Node<T> node, Node<T> added) {
+        if (node == null) {
+            return added;
+        }
+        if (compare(added.start, added.key, node) < 0) {
+            node.left = insert(node.left, added);
+            if (node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, added);
+            if (node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+        update(node);
+        return node;
+    }
+
+    private Node<T> remove(Node<T> node, long start, int key) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = compare(start, key, node);
+        if (cmp < 0) {
+            node.left = remove(node.left, start, key);
+        } else if (cmp > 0) {
+            node.right = remove(node.right, start, key);
+        } else {
+            return merge(node.left, node.right);
+        }
+        update(node);
+        return node;
+    }
+
+    private Node<T> merge(Node<T> left, Node<T> right) {
+        if (left == null) return right;
+        if (right == null) return left;
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        }
+        right.left = merge(left, right.left);
+        update(right);
+        return right;
+    }
+
+    private Node<T> rotateRight(Node<T> node) {
+        Node<T> pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private Node<T> rotateLeft(Node<T> node) {
+        Node<T> pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private static <T> void update(Node<T> node) {
+        node.size = 1 + size(node.left) + size(node.right);
+        long maxEnd = node.end;
+        if (node.left != null) maxEnd = Math.max(maxEnd, node.left.maxEnd);
+        if (node.right != null) maxEnd = Math.max(maxEnd, node.right.maxEnd);
+        node.maxEnd = maxEnd;
+    }
+
+    private static <T> int size(Node<T> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static <T> int compare(long start, int key, Node<T> node) {
+        int cmp = Long.compare(start, node.start);
+        return cmp != 0 ? cmp : Integer.compare(key, node.key);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static class NodeIterator<T> implements Iterator<Node<T>> {
+        private final Deque<Node<T>> stack = new ArrayDeque<>();
+        private final long from;
+        private final long to;
+        private Node<T> next;
+
+        NodeIterator(Node<T> root, long from, long to) {
+            this.from = from;
+            this.to = to;
+            pushLeft(root);
+            advance();
+        }
+
+        private void pushLeft(Node<T> node) {
+            while (node != null && node.maxEnd > from) {
+                stack.push(node);
+                node = node.left;
+            }
+        }
+
+        private void advance() {
+            next = null;
+            while (!stack.isEmpty()) {
+                Node<T> node = stack.pop();
+                if (node.start >= to) {
+                    stack.clear();
+                    return;
+                }
+                pushLeft(node.right);
+                if (node.end > from) {
+                    next = node;
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Node<T> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Node<T> result = next;
+            advance();
+            return result;
+        }
+    }
+
+    private static class OverlapIterator<T> implements Iterator<T> {
+        private final NodeIterator<T> nodes;
+
+        OverlapIterator(Node<T> root, long from, long to) {
+            this.nodes = new NodeIterator<>(root, from, to);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nodes.hasNext();
+        }
+
+        @Override
+        public T next() {
+            return nodes.next().value;
+        }
+    }
+}
+
+// ===================== SESSION INTERVAL INDEX =====================
+// Readers share the lock, so concurrent conflict checks and range queries do not serialize.
+class SessionIntervalIndex implements Iterable<Session> {
+    private final IntervalTree<Session> tree = new IntervalTree<>();
+    // Start each session was indexed under, so it can be found again after its times change.
+    private final Map<Integer, Long> indexedStarts = new HashMap<>();
+    // Recurring sessions are indexed over their whole span and filtered by occurrence on lookup.
+    private final Set<Integer> recurringIds = new HashSet<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public static SessionIntervalIndex of(Collection<? extends Session> sessions) {
+        SessionIntervalIndex index = new SessionIntervalIndex();
+        for (Session session : sessions) {
+            index.add(session);
+        }
+        return index;
+    }
+
+    public void add(Session session) {
+        lock.writeLock().lock();
+        try {
+            remove(session);
+            long start = DateUtils.toEpochSecond(session.getStartTime());
+            tree.insert(start, DateUtils.toEpochSecond(session.getSpanEnd()), session.getId(), session);
+            indexedStarts.put(session.getId(), start);
+            if (session.isRecurring()) {
+                recurringIds.add(session.getId());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean remove(Session session) {
+        lock.writeLock().lock();
+        try {
+            Long start = indexedStarts.remove(session.getId());
+            recurringIds.remove(session.getId());
+            return start != null && tree.remove(start, session.getId());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean contains(Session session) {
+        lock.readLock().lock();
+        try {
+            return indexedStarts.containsKey(session.getId());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Indexed sessions other than the given one that overlap it.
+    public List<Session> getOverlapping(Session session) {
+        List<Session> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Iterator<Session> it = tree.overlapping(DateUtils.toEpochSecond(session.getStartTime()),
+                DateUtils.toEpochSecond(session.getSpanEnd()));
+            while (it.hasNext()) {
+                Session other = it.next();
+                if (other.getId() != session.getId() && session.overlaps(other)) {
+                    result.add(other);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    public List<Session> getSessionsBetween(LocalDateTime from, LocalDateTime to) {
+        List<Session> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Iterator<Session> it = tree.overlapping(DateUtils.toEpochSecond(from), DateUtils.toEpochSecond(to));
+            while (it.hasNext()) {
+                Session session = it.next();
+                if (session.occursDuring(from, to)) {
+                    result.add(session);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    public boolean hasOverlap(LocalDateTime from, LocalDateTime to) {
+        lock.readLock().lock();
+        try {
+            long start = DateUtils.toEpochSecond(from);
+            long end = DateUtils.toEpochSecond(to);
+            if (recurringIds.isEmpty()) {
+                return tree.anyOverlap(start, end);
+            }
+            Iterator<Session> it = tree.overlapping(start, end);
+            while (it.hasNext()) {
+                if (it.next().occursDuring(from, to)) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public LocalDateTime findNextFreeSlot(LocalDateTime notBefore, Duration duration) {
+        lock.readLock().lock();
+        try {
+            long length = duration.getSeconds();
+            if (recurringIds.isEmpty()) {
+                return DateUtils.fromEpochSecond(tree.nextGap(DateUtils.toEpochSecond(notBefore), length));
+            }
+            // A recurring span is mostly free time, so hop past the occurrences that actually
+            // overlap each candidate slot instead.
+            return hopToFreeSlot(DateUtils.toEpochSecond(notBefore), length, 0);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Nearest slot at or after the session's start where it would overlap nothing but itself.
+    public LocalDateTime findNextFreeSlot(Session session) {
+        lock.readLock().lock();
+        try {
+            return hopToFreeSlot(DateUtils.toEpochSecond(session.getStartTime()),
+                Duration.between(session.getStartTime(), session.getEndTime()).getSeconds(), session.getId());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private LocalDateTime hopToFreeSlot(long candidate, long length, int ignoredId) {
+        while (true) {
+            LocalDateTime from = DateUtils.fromEpochSecond(candidate);
+            LocalDateTime to = DateUtils.fromEpochSecond(candidate + length);
+            long blockedUntil = candidate;
+            Iterator<Session> it = tree.overlapping(candidate, candidate + length);
+            while (it.hasNext()) {
+                Session session = it.next();
+                if (session.getId() == ignoredId) {
+                    continue;
+                }
+                long occurrenceLength = Duration.between(session.getStartTime(), session.getEndTime()).getSeconds();
+                for (LocalDateTime occurrence : session.getOccurrences(from, to)) {
+                    blockedUntil = Math.max(blockedUntil, DateUtils.toEpochSecond(occurrence) + occurrenceLength);
+                }
+            }
+            if (blockedUntil == candidate) {
+                return from;
+            }
+            candidate = blockedUntil;
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return tree.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            tree.clear();
+            indexedStarts.clear();
+            recurringIds.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Sessions in start order, which is what the sweep line needs. Iterates over a copy taken
+    // under the read lock, so a long sweep never blocks writers.
+    @Override
+    public Iterator<Session> iterator() {
+        List<Session> byStart;
+        lock.readLock().lock();
+        try {
+            byStart = new ArrayList<>(tree.size());
+            tree.iterator().forEachRemaining(byStart::add);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return byStart.iterator();
+    }
+
+    // Sweep line over sessions sorted by start: every session still active when the next
+    // one starts overlaps it, so all k overlapping pairs come out in O(n log n + k). Recurring
+    // sessions stay active for their whole span, and their pairs are kept only if some
+    // occurrences really overlap.
+    public static Iterator<SessionConflict> sweep(Iterator<Session> byStart, ConflictType type, Resource resource) {
+        return new Iterator<SessionConflict>() {
+            private final PriorityQueue<Session> active = new PriorityQueue<>(Comparator.comparing(Session::getSpanEnd));
+            private Iterator<Session> partners = Collections.emptyIterator();
+            private Session current;
+
+            @Override
+            public boolean hasNext() {
+                while (!partners.hasNext()) {
+                    partners = Collections.emptyIterator();
+                    if (current != null) {
+                        active.add(current);
+                        current = null;
+                    }
+                    if (!byStart.hasNext()) {
+                        return false;
+                    }
+                    current = byStart.next();
+                    while (!active.isEmpty() && !active.peek().getSpanEnd().isAfter(current.getStartTime())) {
+                        active.poll();
+                    }
+                    partners = partnersOf(current);
+                }
+                return true;
+            }
+
+            @Override
+            public SessionConflict next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return new SessionConflict(type, partners.next(), current, resource);
+            }
+
+            private Iterator<Session> partnersOf(Session session) {
+                List<Session> overlapping = new ArrayList<>(active.size());
+                for (Session other : active) {
+                    if (!other.isRecurring() && !session.isRecurring() || session.overlaps(other)) {
+                        overlapping.add(other);
+                    }
+                }
+                return overlapping.iterator();
+            }
+        };
+    }
+
+    public static Iterator<SessionConflict> sweep(Collection<? extends Session> sessions, ConflictType type, Resource resource) {
+        List<Session> byStart = new ArrayList<>(sessions);
+        byStart.sort(Comparator.comparing(Session::getStartTime).thenComparingInt(Session::getId));
+        return sweep(byStart.iterator(), type, resource);
+    }
+}
+
+// ===================== REVISION SCHEDULE =====================
+// Calendar buckets keyed by next revision date. Plans move between buckets in place when
+// they are revised, so "due by a date" only touches the buckets up to that date.
+class RevisionSchedule implements RevisionListener {
+    private final TreeMap<LocalDate, Map<Integer, RevisionPlan>> buckets = new TreeMap<>();
+    private final Map<Integer, LocalDate> indexedDates = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public void add(RevisionPlan plan) {
+        lock.writeLock().lock();
+        try {
+            remove(plan);
+            LocalDate date = plan.getNextRevisionDate();
+            buckets.computeIfAbsent(date, d -> new LinkedHashMap<>()).put(plan.getTaskId(), plan);
+            indexedDates.put(plan.getTaskId(), date);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        plan.setListener(this);
+    }
+
+    public void addAll(Collection<RevisionPlan> plans) {
+        lock.writeLock().lock();
+        try {
+            for (RevisionPlan plan : plans) {
+                add(plan);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean remove(RevisionPlan plan) {
+        lock.writeLock().lock();
+        try {
+            LocalDate date = indexedDates.remove(plan.getTaskId());
+            if (date == null) {
+                return false;
+            }
+            Map<Integer, RevisionPlan> bucket = buckets.get(date);
+            bucket.remove(plan.getTaskId());
+            if (bucket.isEmpty()) {
+                buckets.remove(date);
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void revisionRescheduled(RevisionPlan plan) {
+        lock.writeLock().lock();
+        try {
+            if (indexedDates.containsKey(plan.getTaskId())) {
+                add(plan);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Plans whose next revision is on or before the given date.
+    public List<RevisionPlan> getDue(LocalDate date) {
+        lock.readLock().lock();
+        try {
+            return collect(buckets.headMap(date, true));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<RevisionPlan> getDueBetween(LocalDate from, LocalDate to) {
+        lock.readLock().lock();
+        try {
+            return collect(buckets.subMap(from, true, to, true));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return indexedDates.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            buckets.clear();
+            indexedDates.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static List<RevisionPlan> collect(Map<LocalDate, Map<Integer, RevisionPlan>> range) {
+        List<RevisionPlan> result = new ArrayList<>();
+        for (Map<Integer, RevisionPlan> bucket : range.values()) {
+            result.addAll(bucket.values());
+        }
+        return result;
+    }
+}
+
+// ===================== TASK SEARCH INDEX =====================
+// Inverted index over title, description and tags. Terms live in a sorted dictionary for
+// prefix queries; postings keep field-tagged positions for phrase queries.
+class TaskSearchIndex implements TaskListener {
+    private static final int FIELD_SHIFT = 24;
+    private static final double[] FIELD_WEIGHTS = {3.0, 1.0, 2.0};
+
+    private static final class Posting {
+        final StudyTask task;
+        double weight;
+        int[] positions = new int[2];
+        int count;
+
+        Posting(StudyTask task) {
+            this.task = task;
+        }
+
+        void add(int field, int position) {
+            if (count == positions.length) {
+                positions = Arrays.copyOf(positions, count * 2);
+            }
+            positions[count++] = (field << FIELD_SHIFT) | position;
+            weight += FIELD_WEIGHTS[field];
+        }
+
+        boolean hasPosition(int position) {
+            return Arrays.binarySearch(positions, 0, count, position) >= 0;
+        }
+    }
+
+    private final TreeMap<String, Map<Integer, Posting>> postings = new TreeMap<>();
+    private final Map<Integer, Set<String>> termsByTask = new HashMap<>();
+    private final Map<Integer, StudyTask> indexedTasks = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public void add(StudyTask task) {
+        lock.writeLock().lock();
+        try {
+            remove(task);
+            Map<String, Posting> taskPostings = new HashMap<>();
+            addField(taskPostings, task, 0, task.getTitle());
+            addField(taskPostings, task, 1, task.getDescription());
+            int offset = 0;
+            for (String tag : task.getTags()) {
+                offset = addTokens(taskPostings, task, 2, StringUtils.tokenize(tag), offset) + 1;
+            }
+            for (Map.Entry<String, Posting> entry : taskPostings.entrySet()) {
+                postings.computeIfAbsent(entry.getKey(), t -> new HashMap<>()).put(task.getId(), entry.getValue());
+            }
+            termsByTask.put(task.getId(), taskPostings.keySet());
+            indexedTasks.put(task.getId(), task);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        task.addListener(this);
+    }
+
+    public void addAll(Collection<? extends StudyTask> tasks) {
+        lock.writeLock().lock();
+        try {
+            for (StudyTask task : tasks) {
+                add(task);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean remove(StudyTask task) {
+        lock.writeLock().lock();
+        try {
+            Set<String> terms = termsByTask.remove(task.getId());
+            if (terms == null) {
+                return false;
+            }
+            indexedTasks.remove(task.getId());
+            for (String term : terms) {
+                Map<Integer, Posting> list = postings.get(term);
+                list.remove(task.getId());
+                if (list.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void taskTextChanged(StudyTask task) {
+        lock.writeLock().lock();
+        try {
+            if (termsByTask.containsKey(task.getId())) {
+                add(task);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            termsByTask.clear();
+            indexedTasks.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return termsByTask.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Whitespace-separated clauses, all of which must match: plain terms, prefix terms
+    // ending in '*', and "quoted phrases". Results are ordered by tf-idf relevance.
+    public List<StudyTask> search(String query) {
+        lock.readLock().lock();
+        try {
+            return rank(query);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<StudyTask> rank(String query) {
+        Map<Integer, Double> scores = null;
+        for (String clause : parseClauses(query)) {
+            Map<Integer, Double> clauseScores;
+            if (clause.startsWith("\"")) {
+                clauseScores = matchPhrase(StringUtils.tokenize(clause));
+            } else if (clause.endsWith("*")) {
+                clauseScores = matchPrefix(clause.substring(0, clause.length() - 1).toLowerCase());
+            } else {
+                List<String> tokens = StringUtils.tokenize(clause);
+                clauseScores = tokens.size() == 1 ? matchTerm(tokens.get(0)) : matchPhrase(tokens);
+            }
+            scores = scores == null ? clauseScores : intersect(scores, clauseScores);
+            if (scores.isEmpty()) {
+                break;
+            }
+        }
+        if (scores == null) {
+            return new ArrayList<>();
+        }
+        List<Map.Entry<Integer, Double>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort(Map.Entry.<Integer, Double>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+        List<StudyTask> result = new ArrayList<>(ranked.size());
+        for (Map.Entry<Integer, Double> entry : ranked) {
+            result.add(indexedTasks.get(entry.getKey()));
+        }
+        return result;
+    }
+
+    private Map<Integer, Double> matchTerm(String term) {
+        Map<Integer, Double> scores = new HashMap<>();
+        Map<Integer, Posting> list = postings.get(term);
+        if (list != null) {
+            double idf = idf(list.size());
+            for (Posting posting : list.values()) {
+                scores.put(posting.task.getId(), posting.weight * idf);
+            }
+        }
+        return scores;
+    }
+
+    private Map<Integer, Double> matchPrefix(String prefix) {
+        Map<Integer, Double> scores = new HashMap<>();
+        if (prefix.isEmpty()) {
+            return scores;
+        }
+        for (Map<Integer, Posting> list : postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+            double idf = idf(list.size());
+            for (Posting posting : list.values()) {
+                scores.merge(posting.task.getId(), posting.weight * idf, Double::sum);
+            }
+        }
+        return scores;
+    }
+
+    private Map<Integer, Double> matchPhrase(List<String> tokens) {
+        Map<Integer, Double> scores = new HashMap<>();
+        if (tokens.isEmpty()) {
+            return scores;
+        }
+        List<Map<Integer, Posting>> lists = new ArrayList<>();
+        for (String token : tokens) {
+            Map<Integer, Posting> list = postings.get(token);
+            if (list == null) {
+                return scores;
+            }
+            lists.add(list);
+        }
+        Map<Integer, Posting> first = lists.get(0);
+        for (Posting head : first.values()) {
+            int taskId = head.task.getId();
+            if (containsPhrase(head, lists, taskId)) {
+                double score = 0;
+                for (Map<Integer, Posting> list : lists) {
+                    score += list.get(taskId).weight * idf(list.size());
+                }
+                scores.put(taskId, score);
+            }
+        }
+        return scores;
+    }
+
+    private static boolean containsPhrase(Posting head, List<Map<Integer, Posting>> lists, int taskId) {
+        for (int i = 1; i < lists.size(); i++) {
+            if (!lists.get(i).containsKey(taskId)) {
+                return false;
+            }
+        }
+        for (int p = 0; p < head.count; p++) {
+            int start = head.positions[p];
+            boolean matched = true;
+            for (int i = 1; i < lists.size() && matched; i++) {
+                matched = lists.get(i).get(taskId).hasPosition(start + i);
+            }
+            if (matched) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private double idf(int documentFrequency) {
+        return Math.log(1.0 + (double) termsByTask.size() / documentFrequency);
+    }
+
+    private static Map<Integer, Double> intersect(Map<Integer, Double> left, Map<Integer, Double> right) {
+        Map<Integer, Double> result = new HashMap<>();
+        for (Map.Entry<Integer, Double> entry : left.entrySet()) {
+            Double other = right.get(entry.getKey());
+            if (other != null) {
+                result.put(entry.getKey(), entry.getValue() + other);
+            }
+        }
+        return result;
+    }
+
+    private static void addField(Map<String, Posting> taskPostings, StudyTask task, int field, String text) {
+        addTokens(taskPostings, task, field, StringUtils.tokenize(text), 0);
+    }
+
+    private static int addTokens(Map<String, Posting> taskPostings, StudyTask task, int field, List<String> tokens, int offset) {
+        for (String token : tokens) {
+            taskPostings.computeIfAbsent(token, t -> new Posting(task)).add(field, offset++);
+        }
+        return offset;
+    }
+
+    private static List<String> parseClauses(String query) {
+        List<String> clauses = new ArrayList<>();
+        if (query == null) {
+            return clauses;
+        }
+        int i = 0;
+        while (i < query.length()) {
+            char c = query.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '"') {
+                int close = query.indexOf('"', i + 1);
+                int end = close < 0 ? query.length() : close;
+                clauses.add(query.substring(i, end));
+                i = end + 1;
+            } else {
+                int end = i;
+                while (end < query.length() && !Character.isWhitespace(query.charAt(end))) {
+                    end++;
+                }
+                clauses.add(query.substring(i, end));
+                i = end;
+            }
+        }
+        return clauses;
+    }
+}
+
+// ===================== PROGRESS COUNTERS =====================
+// Running totals behind the progress report, kept current from task and session events so
+// a report costs the same however much history has accumulated.
+class ProgressCounters implements TaskListener, SessionListener {
+    private static final class Totals {
+        long tasks;
+        long completed;
+        double hours;
+        double completedHours;
+    }
+
+    private final EnumMap<Difficulty, Totals> byDifficulty = new EnumMap<>(Difficulty.class);
+    private long sessions;
+    private long completedSessions;
+
+    public ProgressCounters() {
+        for (Difficulty difficulty : Difficulty.values()) {
+            byDifficulty.put(difficulty, new Totals());
+        }
+    }
+
+    public static ProgressCounters of(Collection<? extends StudyTask> tasks, Collection<? extends Session> sessions) {
+        ProgressCounters counters = new ProgressCounters();
+        for (StudyTask task : tasks) {
+            counters.count(task.getDifficulty(), task.getEstimatedHours(), task.getStatus() == TaskStatus.DONE, 1);
+        }
+        for (Session session : sessions) {
+            counters.countSession(session.getStatus(), 1);
+        }
+        return counters;
+    }
+
+    // Starts counting the task and follows its status and estimate from now on.
+    public void addTask(StudyTask task) {
+        synchronized (this) {
+            count(task.getDifficulty(), task.getEstimatedHours(), task.getStatus() == TaskStatus.DONE, 1);
+        }
+        task.addListener(this);
+    }
+
+    public void removeTask(StudyTask task) {
+        task.removeListener(this);
+        synchronized (this) {
+            count(task.getDifficulty(), task.getEstimatedHours(), task.getStatus() == TaskStatus.DONE, -1);
+        }
+    }
+
+    public void addSession(Session session) {
+        synchronized (this) {
+            countSession(session.getStatus(), 1);
+        }
+        session.addListener(this);
+    }
+
+    public void removeSession(Session session) {
+        session.removeListener(this);
+        synchronized (this) {
+            countSession(session.getStatus(), -1);
+        }
+    }
+
+    @Override
+    public synchronized void taskStatusChanged(StudyTask task, TaskStatus previous) {
+        boolean wasDone = previous == TaskStatus.DONE;
+        boolean done = task.getStatus() == TaskStatus.DONE;
+        if (wasDone != done) {
+            Totals totals = byDifficulty.get(task.getDifficulty());
+            int sign = done ? 1 : -1;
+            totals.completed += sign;
+            totals.completedHours += sign * task.getEstimatedHours();
+        }
+    }
+
+    @Override
+    public synchronized void taskEstimateChanged(StudyTask task, Difficulty previousDifficulty, double previousHours) {
+        boolean done = task.getStatus() == TaskStatus.DONE;
+        count(previousDifficulty, previousHours, done, -1);
+        count(task.getDifficulty(), task.getEstimatedHours(), done, 1);
+    }
+
+    @Override
+    public void sessionRescheduled(Session session) {
+    }
+
+    @Override
+    public synchronized void sessionStatusChanged(Session session, SessionStatus previous) {
+        countSession(previous, -1);
+        countSession(session.getStatus(), 1);
+    }
+
+    public synchronized void clear() {
+        for (Totals totals : byDifficulty.values()) {
+            totals.tasks = 0;
+            totals.completed = 0;
+            totals.hours = 0;
+            totals.completedHours = 0;
+        }
+        sessions = 0;
+        completedSessions = 0;
+    }
+
+    // Consistent copy of every counter, for reading without holding the lock.
+    public synchronized ProgressCounters snapshot() {
+        ProgressCounters copy = new ProgressCounters();
+        for (Map.Entry<Difficulty, Totals> entry : byDifficulty.entrySet()) {
+            Totals from = entry.getValue();
+            Totals to = copy.byDifficulty.get(entry.getKey());
+            to.tasks = from.tasks;
+            to.completed = from.completed;
+            to.hours = from.hours;
+            to.completedHours = from.completedHours;
+        }
+        copy.sessions = sessions;
+        copy.completedSessions = completedSessions;
+        return copy;
+    }
+
+    public synchronized long getTaskCount(Difficulty difficulty) { return byDifficulty.get(difficulty).tasks; }
+
+    public synchronized long getTotalTasks() {
+        long total = 0;
+        for (Totals totals : byDifficulty.values()) total += totals.tasks;
+        return total;
+    }
+
+    public synchronized long getCompletedTasks() {
+        long total = 0;
+        for (Totals totals : byDifficulty.values()) total += totals.completed;
+        return total;
+    }
+
+    public synchronized double getTotalEstimatedHours() {
+        double total = 0;
+        for (Totals totals : byDifficulty.values()) total += totals.hours;
+        return total;
+    }
+
+    public synchronized double getCompletedHours() {
+        double total = 0;
+        for (Totals totals : byDifficulty.values()) total += totals.completedHours;
+        return total;
+    }
+
+    public synchronized long getTotalSessions() { return sessions; }
+    public synchronized long getCompletedSessions() { return completedSessions; }
+
+    private void count(Difficulty difficulty, double hours, boolean done, int sign) {
+        Totals totals = byDifficulty.get(difficulty);
+        totals.tasks += sign;
+        totals.hours += sign * hours;
+        if (done) {
+            totals.completed += sign;
+            totals.completedHours += sign * hours;
+        }
+    }
+
+    private void countSession(SessionStatus status, int sign) {
+        sessions += sign;
+        if (status == SessionStatus.COMPLETED) {
+            completedSessions += sign;
+        }
+    }
+}
+
+// ===================== DAY HISTOGRAM =====================
+// Session count and minutes per day, in primitive arrays indexed by epoch day relative to the
+// first day stored. The arrays grow at either end as needed.
+class DayHistogram {
+    private long firstDay;
+    private int[] sessions = new int[0];
+    private long[] minutes = new long[0];
+
+    public void add(LocalDate day, int sessionCount, long sessionMinutes) {
+        add(day.toEpochDay(), sessionCount, sessionMinutes);
+    }
+
+    void add(long epochDay, int sessionCount, long sessionMinutes) {
+        ensureCovers(epochDay);
+        int slot = (int) (epochDay - firstDay);
+        sessions[slot] += sessionCount;
+        minutes[slot] += sessionMinutes;
+    }
+
+    public int getSessions(LocalDate day) {
+        int slot = slot(day.toEpochDay());
+        return slot < 0 ? 0 : sessions[slot];
+    }
+
+    public long getMinutes(LocalDate day) {
+        int slot = slot(day.toEpochDay());
+        return slot < 0 ? 0 : minutes[slot];
+    }
+
+    public boolean isEmpty() {
+        for (int count : sessions) {
+            if (count != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Copy of the days from..to inclusive.
+    public DayHistogram range(LocalDate from, LocalDate to) {
+        DayHistogram copy = new DayHistogram();
+        long start = from.toEpochDay();
+        int length = (int) Math.max(0, to.toEpochDay() - start + 1);
+        copy.firstDay = start;
+        copy.sessions = new int[length];
+        copy.minutes = new long[length];
+        long overlapStart = Math.max(start, firstDay);
+        long overlapEnd = Math.min(start + length, firstDay + sessions.length);
+        if (overlapStart < overlapEnd) {
+            int count = (int) (overlapEnd - overlapStart);
+            System.arraycopy(sessions, (int) (overlapStart - firstDay), copy.sessions, (int) (overlapStart - start), count);
+            System.arraycopy(minutes, (int) (overlapStart - firstDay), copy.minutes, (int) (overlapStart - start), count);
+        }
+        return copy;
+    }
+
+    public void clear() {
+        sessions = new int[0];
+        minutes = new long[0];
+    }
+
+    private int slot(long epochDay) {
+        long slot = epochDay - firstDay;
+        return slot >= 0 && slot < sessions.length ? (int) slot : -1;
+    }
+
+    private void ensureCovers(long epochDay) {
+        int length = sessions.length;
+        if (length == 0) {
+            firstDay = epochDay;
+            sessions = new int[32];
+            minutes = new long[32];
+            return;
+        }
+        if (epochDay < firstDay) {
+            long newFirst = Math.min(epochDay, firstDay - length);
+            resize(newFirst, (int) (firstDay - newFirst) + length);
+        } else if (epochDay >= firstDay + length) {
+            resize(firstDay, (int) Math.max(epochDay - firstDay + 1, 2L * length));
+        }
+    }
+
+    private void resize(long newFirst, int newLength) {
+        int offset = (int) (firstDay - newFirst);
+        int[] newSessions = new int[newLength];
+        long[] newMinutes = new long[newLength];
+        System.arraycopy(sessions, 0, newSessions, offset, sessions.length);
+        System.arraycopy(minutes, 0, newMinutes, offset, minutes.length);
+        firstDay = newFirst;
+        sessions = newSessions;
+        minutes = newMinutes;
+    }
+}
+
+// ===================== SESSION HISTOGRAMS =====================
+// Day histograms for all sessions, per group member and per subject. Each session is counted
+// on the day it starts; a reschedule moves it between days. Recurring sessions are kept aside
+// and their occurrences added to each query's range, so an endless rule costs nothing here.
+// Renaming a topic's subject moves its sessions to the new subject's histogram.
+class SessionHistograms implements SessionListener, TaskListener {
+    private static final class Counted {
+        final long epochDay;
+        final long minutes;
+        final int[] memberIds;
+        final int taskId;
+        final String subject;
+        // Set for recurring sessions, which are counted per query rather than stored.
+        final Session recurring;
+
+        Counted(long epochDay, long minutes, int[] memberIds, int taskId, String subject, Session recurring) {
+            this.epochDay = epochDay;
+            this.minutes = minutes;
+            this.memberIds = memberIds;
+            this.taskId = taskId;
+            this.subject = subject;
+            this.recurring = recurring;
+        }
+
+        boolean hasMember(int memberId) {
+            for (int id : memberIds) {
+                if (id == memberId) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private final DayHistogram all = new DayHistogram();
+    private final Map<Integer, DayHistogram> byMember = new HashMap<>();
+    private final Map<String, DayHistogram> bySubject = new HashMap<>();
+    private final Map<Integer, Counted> counted = new HashMap<>();
+    private final Map<Integer, Counted> recurring = new HashMap<>();
+    private final IntFunction<StudyTask> taskLookup;
+
+    public SessionHistograms(IntFunction<StudyTask> taskLookup) {
+        this.taskLookup = taskLookup;
+    }
+
+    public void add(Session session) {
+        StudyTask task = taskLookup.apply(session.getTaskId());
+        synchronized (this) {
+            remove(session.getId());
+            String subject = task instanceof Topic ? ((Topic) task).getSubject() : null;
+            int[] memberIds = session.getAssignedGroup().stream().mapToInt(GroupMember::getId).toArray();
+            Counted entry = new Counted(session.getStartTime().toLocalDate().toEpochDay(),
+                Duration.between(session.getStartTime(), session.getEndTime()).toMinutes(), memberIds,
+                session.getTaskId(), subject, session.isRecurring() ? session : null);
+            apply(entry, 1);
+            counted.put(session.getId(), entry);
+        }
+        session.addListener(this);
+        if (task instanceof Topic) {
+            task.addListener(this);
+        }
+    }
+
+    public synchronized boolean remove(Session session) {
+        return remove(session.getId());
+    }
+
+    @Override
+    public void sessionRescheduled(Session session) {
+        synchronized (this) {
+            if (!counted.containsKey(session.getId())) {
+                return;
+            }
+        }
+        add(session);
+    }
+
+    // Subject changes are rare, so the entries of the topic's sessions are found by a scan.
+    @Override
+    public synchronized void taskDetailsChanged(StudyTask task) {
+        if (!(task instanceof Topic)) {
+            return;
+        }
+        String subject = ((Topic) task).getSubject();
+        for (Map.Entry<Integer, Counted> slot : counted.entrySet()) {
+            Counted entry = slot.getValue();
+            if (entry.taskId == task.getId() && !Objects.equals(entry.subject, subject)) {
+                apply(entry, -1);
+                Counted moved = new Counted(entry.epochDay, entry.minutes, entry.memberIds, entry.taskId, subject, entry.recurring);
+                apply(moved, 1);
+                slot.setValue(moved);
+            }
+        }
+    }
+
+    public synchronized DayHistogram getHistogram(LocalDate from, LocalDate to) {
+        return addRecurring(all.range(from, to), from, to, entry -> true);
+    }
+
+    public synchronized DayHistogram getMemberHistogram(int memberId, LocalDate from, LocalDate to) {
+        return addRecurring(byMember.getOrDefault(memberId, new DayHistogram()).range(from, to), from, to,
+            entry -> entry.hasMember(memberId));
+    }
+
+    public synchronized DayHistogram getSubjectHistogram(String subject, LocalDate from, LocalDate to) {
+        return addRecurring(bySubject.getOrDefault(subject, new DayHistogram()).range(from, to), from, to,
+            entry -> subject.equals(entry.subject));
+    }
+
+    public synchronized void clear() {
+        all.clear();
+        byMember.clear();
+        bySubject.clear();
+        counted.clear();
+        recurring.clear();
+    }
+
+    // Adds the occurrences of recurring sessions that start within from..to.
+    private DayHistogram addRecurring(DayHistogram histogram, LocalDate from, LocalDate to, Predicate<Counted> filter) {
+        LocalDateTime windowStart = from.atStartOfDay();
+        for (Counted entry : recurring.values()) {
+            if (!filter.test(entry)) {
+                continue;
+            }
+            for (LocalDateTime occurrence : entry.recurring.getOccurrences(windowStart, to.plusDays(1).atStartOfDay())) {
+                if (!occurrence.isBefore(windowStart)) {
+                    histogram.add(occurrence.toLocalDate(), 1, entry.minutes);
+                }
+            }
+        }
+        return histogram;
+    }
+
+    private boolean remove(int sessionId) {
+        Counted entry = counted.remove(sessionId);
+        if (entry == null) {
+            return false;
+        }
+        apply(entry, -1);
+        return true;
+    }
+
+    private void apply(Counted entry, int sign) {
+        if (entry.recurring != null) {
+            if (sign > 0) {
+                recurring.put(entry.recurring.getId(), entry);
+            } else {
+                recurring.remove(entry.recurring.getId());
+            }
+            return;
+        }
+        all.add(entry.epochDay, sign, sign * entry.minutes);
+        for (int memberId : entry.memberIds) {
+            byMember.computeIfAbsent(memberId, id -> new DayHistogram()).add(entry.epochDay, sign, sign * entry.minutes);
+        }
+        if (entry.subject != null) {
+            bySubject.computeIfAbsent(entry.subject, s -> new DayHistogram()).add(entry.epochDay, sign, sign * entry.minutes);
+        }
+    }
+}
+
+// ===================== DEPENDENCY ORDER =====================
+// Dynamic topological order of tasks (Pearce-Kelly). Every dependency sits before the tasks
+// that depend on it. Adding an edge only reorders the tasks between its two endpoints in the
+// current order, and the same bounded search detects cycles, without recursion.
+class DependencyOrder {
+    private int[] ordById = new int[16];
+    private StudyTask[] taskByOrd = new StudyTask[16];
+    private int nextOrd;
+    private final IntIndex<List<StudyTask>> dependents = new IntIndex<>();
+    // Edges whose dependency has not been registered yet, keyed by the dependency's id.
+    private final Map<Integer, List<StudyTask>> waiting = new HashMap<>();
+    // Restored edges left out of the order because they close a cycle: task id << 32 | dependency id.
+    private final Set<Long> ignored = new HashSet<>();
+    private int[] visited = new int[16];
+    private int visitStamp;
+
+    public DependencyOrder() {
+        Arrays.fill(ordById, -1);
+    }
+
+    // Appends the task to the order and links it to the dependencies it already has.
+    public synchronized void add(StudyTask task) {
+        if (ord(task) >= 0) {
+            return;
+        }
+        int id = task.getId();
+        if (id >= ordById.length) {
+            int oldLength = ordById.length;
+            ordById = Arrays.copyOf(ordById, Math.max(id + 1, oldLength * 2));
+            Arrays.fill(ordById, oldLength, ordById.length, -1);
+        }
+        if (nextOrd == taskByOrd.length) {
+            taskByOrd = Arrays.copyOf(taskByOrd, nextOrd * 2);
+        }
+        ordById[id] = nextOrd;
+        taskByOrd[nextOrd++] = task;
+        dependents.put(id, new ArrayList<>());
+        task.setDependencyOrder(this);
+        for (StudyTask dependency : task.getDependencies()) {
+            link(task, dependency);
+        }
+        List<StudyTask> waitingOnTask = waiting.remove(id);
+        if (waitingOnTask != null) {
+            for (StudyTask dependent : waitingOnTask) {
+                link(dependent, task);
+            }
+        }
+    }
+
+    public synchronized void remove(StudyTask task) {
+        int ord = ord(task);
+        if (ord < 0) {
+            return;
+        }
+        for (StudyTask dependency : task.getDependencies()) {
+            List<StudyTask> list = dependents.get(dependency.getId());
+            if (list != null) {
+                list.remove(task);
+            }
+        }
+        for (StudyTask dependent : dependents.get(task.getId())) {
+            waiting.computeIfAbsent(task.getId(), d -> new ArrayList<>()).add(dependent);
+        }
+        taskByOrd[ord] = null;
+        ordById[task.getId()] = -1;
+        dependents.remove(task.getId());
+        task.setDependencyOrder(null);
+    }
+
+    // True while some task in the order still depends on this one.
+    public synchronized boolean hasDependents(StudyTask task) {
+        List<StudyTask> list = ord(task) < 0 ? null : dependents.get(task.getId());
+        return list != null && !list.isEmpty();
+    }
+
+    public synchronized boolean addDependency(StudyTask task, StudyTask dependency) {
+        if (task.getDependencies().contains(dependency)) {
+            return false;
+        }
+        boolean cyclic = ord(dependency) >= 0 ? !order(dependency, task)
+            : dependency.hasCircularDependency(task, new HashSet<>());
+        if (cyclic) {
+            throw new IllegalArgumentException("Adding this dependency would create a circular reference!");
+        }
+        task.getDependencies().add(dependency);
+        if (ord(dependency) >= 0) {
+            dependents.get(dependency.getId()).add(task);
+        } else {
+            waiting.computeIfAbsent(dependency.getId(), d -> new ArrayList<>()).add(task);
+        }
+        return true;
+    }
+
+    // Tasks with every dependency ahead of its dependents.
+    public synchronized List<StudyTask> getOrder() {
+        List<StudyTask> order = new ArrayList<>(dependents.size());
+        for (int i = 0; i < nextOrd; i++) {
+            if (taskByOrd[i] != null) {
+                order.add(taskByOrd[i]);
+            }
+        }
+        return order;
+    }
+
+    // Longest chain of dependent tasks by total estimated hours, first task first.
+    public synchronized List<StudyTask> getCriticalPath() {
+        double[] finish = new double[ordById.length];
+        StudyTask[] previous = new StudyTask[ordById.length];
+        StudyTask last = null;
+        for (int i = 0; i < nextOrd; i++) {
+            StudyTask task = taskByOrd[i];
+            if (task == null) {
+                continue;
+            }
+            double start = 0;
+            for (StudyTask dependency : task.getDependencies()) {
+                if (isOrdered(task, dependency) && finish[dependency.getId()] > start) {
+                    start = finish[dependency.getId()];
+                    previous[task.getId()] = dependency;
+                }
+            }
+            finish[task.getId()] = start + task.getEstimatedHours();
+            if (last == null || finish[task.getId()] > finish[last.getId()]) {
+                last = task;
+            }
+        }
+        LinkedList<StudyTask> path = new LinkedList<>();
+        for (StudyTask task = last; task != null; task = previous[task.getId()]) {
+            path.addFirst(task);
+        }
+        return path;
+    }
+
+    public synchronized void clear() {
+        for (int i = 0; i < nextOrd; i++) {
+            if (taskByOrd[i] != null) {
+                taskByOrd[i].setDependencyOrder(null);
+            }
+        }
+        Arrays.fill(ordById, -1);
+        Arrays.fill(taskByOrd, null);
+        nextOrd = 0;
+        dependents.clear();
+        waiting.clear();
+        ignored.clear();
+    }
+
+    public synchronized int size() {
+        return dependents.size();
+    }
+
+    // Records an edge the task already carries, e.g. one restored from a snapshot. Edges that
+    // would close a cycle in older data stay on the task but are left out of the order.
+    private void link(StudyTask task, StudyTask dependency) {
+        if (ord(dependency) < 0) {
+            waiting.computeIfAbsent(dependency.getId(), d -> new ArrayList<>()).add(task);
+        } else if (order(dependency, task)) {
+            dependents.get(dependency.getId()).add(task);
+        } else {
+            ignored.add(edge(task, dependency));
+            Logger.getInstance().log(LogLevel.WARN, "Ignoring circular dependency of task " + task.getId()
+                + " on task " + dependency.getId());
+        }
+    }
+
+    private boolean isOrdered(StudyTask task, StudyTask dependency) {
+        return ord(dependency) >= 0 && (ignored.isEmpty() || !ignored.contains(edge(task, dependency)));
+    }
+
+    private static long edge(StudyTask task, StudyTask dependency) {
+        return (long) task.getId() << 32 | dependency.getId();
+    }
+
+    private int ord(StudyTask task) {
+        int id = task.getId();
+        return id < ordById.length ? ordById[id] : -1;
+    }
+
+    // Moves tasks so that dependency precedes task, or returns false if task already reaches
+    // dependency through its dependents. Only tasks ordered between the two are visited.
+    private boolean order(StudyTask dependency, StudyTask task) {
+        int lower = ord(task);
+        int upper = ord(dependency);
+        if (upper < lower) {
+            return true;
+        }
+        if (upper == lower) {
+            return false;
+        }
+        if (++visitStamp == 0) {
+            Arrays.fill(visited, 0);
+            visitStamp = 1;
+        }
+        List<StudyTask> forward = new ArrayList<>();
+        Deque<StudyTask> pending = new ArrayDeque<>();
+        visit(task);
+        pending.push(task);
+        while (!pending.isEmpty()) {
+            StudyTask current = pending.pop();
+            forward.add(current);
+            for (StudyTask dependent : dependents.get(current.getId())) {
+                int ord = ord(dependent);
+                if (ord == upper) {
+                    return false;
+                }
+                if (ord < upper && visit(dependent)) {
+                    pending.push(dependent);
+                }
+            }
+        }
+        List<StudyTask> backward = new ArrayList<>();
+        visit(dependency);
+        pending.push(dependency);
+        while (!pending.isEmpty()) {
+            StudyTask current = pending.pop();
+            backward.add(current);
+            for (StudyTask before : current.getDependencies()) {
+                int ord = ord(before);
+                if (ord > lower && isOrdered(current, before) && visit(before)) {
+                    pending.push(before);
+                }
+            }
+        }
+        Comparator<StudyTask> byOrd = Comparator.comparingInt(this::ord);
+        forward.sort(byOrd);
+        backward.sort(byOrd);
+        int[] slots = new int[forward.size() + backward.size()];
+        int n = 0;
+        for (StudyTask moved : backward) slots[n++] = ord(moved);
+        for (StudyTask moved : forward) slots[n++] = ord(moved);
+        Arrays.sort(slots);
+        n = 0;
+        for (StudyTask moved : backward) place(moved, slots[n++]);
+        for (StudyTask moved : forward) place(moved, slots[n++]);
+        return true;
+    }
+
+    private boolean visit(StudyTask task) {
+        int id = task.getId();
+        if (id >= visited.length) {
+            visited = Arrays.copyOf(visited, Math.max(id + 1, visited.length * 2));
+        }
+        if (visited[id] == visitStamp) {
+            return false;
+        }
+        visited[id] = visitStamp;
+        return true;
+    }
+
+    private void place(StudyTask task, int ord) {
+        ordById[task.getId()] = ord;
+        taskByOrd[ord] = task;
+    }
+}
+
+// ===================== READY QUEUE =====================
+// Tasks that can be started now: still TODO, with every dependency done. Each task keeps a
+// count of unfinished dependencies, and a dependency finishing only touches its dependents,
+// so the next task to start is always at the head of the easiest non-empty bucket.
+class ReadyQueue implements TaskListener {
+    private final IntIndex<StudyTask> tracked = new IntIndex<>();
+    private final IntIndex<List<StudyTask>> dependents = new IntIndex<>();
+    private final EnumMap<Difficulty, LinkedHashSet<StudyTask>> ready = new EnumMap<>(Difficulty.class);
+    private int[] unmet = new int[16];
+
+    public ReadyQueue() {
+        for (Difficulty difficulty : Difficulty.values()) {
+            ready.put(difficulty, new LinkedHashSet<>());
+        }
+    }
+
+    static boolean isFinished(TaskStatus status) {
+        return status == TaskStatus.DONE || status == TaskStatus.REVISED;
+    }
+
+    public void add(StudyTask task) {
+        synchronized (this) {
+            if (tracked.put(task.getId(), task) != null) {
+                return;
+            }
+            int count = 0;
+            for (StudyTask dependency : task.getDependencies()) {
+                dependentsOf(dependency).add(task);
+                if (!isFinished(dependency.getStatus())) {
+                    count++;
+                }
+            }
+            setUnmet(task, count);
+            refresh(task);
+        }
+        task.addListener(this);
+        for (StudyTask dependency : task.getDependencies()) {
+            dependency.addListener(this);
+        }
+    }
+
+    public synchronized void remove(StudyTask task) {
+        if (tracked.remove(task.getId()) == null) {
+            return;
+        }
+        ready.get(task.getDifficulty()).remove(task);
+        for (StudyTask dependency : task.getDependencies()) {
+            List<StudyTask> list = dependents.get(dependency.getId());
+            if (list != null) {
+                list.remove(task);
+            }
+        }
+        List<StudyTask> waitingOnTask = dependents.get(task.getId());
+        if (waitingOnTask == null || waitingOnTask.isEmpty()) {
+            task.removeListener(this);
+        }
+    }
+
+    // Easiest ready task, oldest first within a difficulty, or null if nothing can start.
+    public synchronized StudyTask peek() {
+        for (LinkedHashSet<StudyTask> bucket : ready.values()) {
+            if (!bucket.isEmpty()) {
+                return bucket.iterator().next();
+            }
+        }
+        return null;
+    }
+
+    public synchronized List<StudyTask> getReady() {
+        List<StudyTask> result = new ArrayList<>();
+        for (LinkedHashSet<StudyTask> bucket : ready.values()) {
+            result.addAll(bucket);
+        }
+        return result;
+    }
+
+    public synchronized List<StudyTask> getReady(Difficulty difficulty) {
+        return new ArrayList<>(ready.get(difficulty));
+    }
+
+    public synchronized int size() {
+        int size = 0;
+        for (LinkedHashSet<StudyTask> bucket : ready.values()) {
+            size += bucket.size();
+        }
+        return size;
+    }
+
+    public synchronized int getUnmetDependencies(StudyTask task) {
+        return task.getId() < unmet.length ? unmet[task.getId()] : 0;
+    }
+
+    public synchronized void clear() {
+        tracked.clear();
+        dependents.clear();
+        for (LinkedHashSet<StudyTask> bucket : ready.values()) {
+            bucket.clear();
+        }
+        Arrays.fill(unmet, 0);
+    }
+
+    @Override
+    public void taskStatusChanged(StudyTask task, TaskStatus previous) {
+        synchronized (this) {
+            boolean finished = isFinished(task.getStatus());
+            if (finished != isFinished(previous)) {
+                List<StudyTask> waitingOnTask = dependents.get(task.getId());
+                if (waitingOnTask != null) {
+                    for (StudyTask dependent : waitingOnTask) {
+                        setUnmet(dependent, getUnmetDependencies(dependent) + (finished ? -1 : 1));
+                        refresh(dependent);
+                    }
+                }
+            }
+            if (tracked.contains(task.getId())) {
+                refresh(task);
+            }
+        }
+    }
+
+    @Override
+    public void taskEstimateChanged(StudyTask task, Difficulty previousDifficulty, double previousHours) {
+        synchronized (this) {
+            if (ready.get(previousDifficulty).remove(task)) {
+                ready.get(task.getDifficulty()).add(task);
+            }
+        }
+    }
+
+    @Override
+    public void taskDependencyAdded(StudyTask task, StudyTask dependency) {
+        synchronized (this) {
+            if (!tracked.contains(task.getId())) {
+                return;
+            }
+            dependentsOf(dependency).add(task);
+            if (!isFinished(dependency.getStatus())) {
+                setUnmet(task, getUnmetDependencies(task) + 1);
+                refresh(task);
+            }
+        }
+        dependency.addListener(this);
+    }
+
+    private List<StudyTask> dependentsOf(StudyTask dependency) {
+        List<StudyTask> list = dependents.get(dependency.getId());
+        if (list == null) {
+            list = new ArrayList<>();
+            dependents.put(dependency.getId(), list);
+        }
+        return list;
+    }
+
+    private void setUnmet(StudyTask task, int count) {
+        int id = task.getId();
+        if (id >= unmet.length) {
+            unmet = Arrays.copyOf(unmet, Math.max(id + 1, unmet.length * 2));
+        }
+        unmet[id] = count;
+    }
+
+    private void refresh(StudyTask task) {
+        LinkedHashSet<StudyTask> bucket = ready.get(task.getDifficulty());
+        if (tracked.contains(task.getId()) && task.getStatus() == TaskStatus.TODO && getUnmetDependencies(task) == 0) {
+            bucket.add(task);
+        } else {
+            bucket.remove(task);
+        }
+    }
+}
+
+// ===================== CHANGE LOG =====================
+// The latest change to each task and session, ordered by version, so everything changed after
+// a version is one tail view whose cost follows the number of changes, not the planner's size.
+// A deleted record stays behind as a tombstone. Versions come from a clock seeded with the
+// wall time, so they keep rising across restarts. The log itself starts empty on every load,
+// and a version older than getBaseVersion() cannot be answered from it.
+class ChangeLog {
+    static final class Entry {
+        final boolean task;
+        final int id;
+        final long version;
+        // When the record last entered the planner, to tell inserts from updates.
+        final long insertedVersion;
+        // Null once deleted.
+        final Exportable record;
+
+        Entry(boolean task, int id, long version, long insertedVersion, Exportable record) {
+            this.task = task;
+            this.id = id;
+            this.version = version;
+            this.insertedVersion = insertedVersion;
+            this.record = record;
+        }
+
+        // How the record changed for a reader that has everything up to the given version.
+        ChangeKind kindSince(long since) {
+            if (record == null) {
+                return ChangeKind.DELETED;
+            }
+            return insertedVersion > since ? ChangeKind.INSERTED : ChangeKind.UPDATED;
+        }
+    }
+
+    private final NavigableMap<Long, Entry> byVersion = new ConcurrentSkipListMap<>();
+    private long clock = System.currentTimeMillis() * 1000;
+    private long baseVersion = clock;
+    // Highest version whose entry is in byVersion; what readers may use as a watermark.
+    private volatile long version = clock;
+
+    public synchronized void taskInserted(StudyTask task) {
+        task.setVersion(record(true, task.getId(), task, 0, true));
+    }
+
+    public synchronized void tasksInserted(Collection<? extends StudyTask> tasks) {
+        for (StudyTask task : tasks) {
+            task.setVersion(record(true, task.getId(), task, 0, true));
+        }
+    }
+
+    public synchronized void taskUpdated(StudyTask task) {
+        task.setVersion(record(true, task.getId(), task, task.getVersion(), false));
+    }
+
+    public synchronized void taskDeleted(StudyTask task) {
+        task.setVersion(record(true, task.getId(), null, task.getVersion(), false));
+    }
+
+    public synchronized void sessionInserted(Session session) {
+        session.setVersion(record(false, session.getId(), session, 0, true));
+    }
+
+    public synchronized void sessionUpdated(Session session) {
+        session.setVersion(record(false, session.getId(), session, session.getVersion(), false));
+    }
+
+    public synchronized void sessionDeleted(Session session) {
+        session.setVersion(record(false, session.getId(), null, session.getVersion(), false));
+    }
+
+    // The entity's own version stamp finds its previous entry; stamps from before the last
+    // reset have none.
+    private long record(boolean task, int id, Exportable record, long previousVersion, boolean inserted) {
+        Entry previous = previousVersion >= baseVersion ? byVersion.remove(previousVersion) : null;
+        long next = ++clock;
+        long insertedVersion = inserted ? next : previous != null ? previous.insertedVersion : baseVersion;
+        byVersion.put(next, new Entry(task, id, next, insertedVersion, record));
+        version = next;
+        return next;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public synchronized long getBaseVersion() {
+        return baseVersion;
+    }
+
+    // Entries after since, up to and including upTo. A record changed again meanwhile moves
+    // past upTo and is picked up by the next read instead.
+    public Collection<Entry> between(long since, long upTo) {
+        if (since >= upTo) {
+            return Collections.emptyList();
+        }
+        return byVersion.subMap(since, false, upTo, true).values();
+    }
+
+    // Forgets every change; later reads need a version from after this point.
+    public synchronized void reset() {
+        byVersion.clear();
+        baseVersion = ++clock;
+        version = baseVersion;
+    }
+}
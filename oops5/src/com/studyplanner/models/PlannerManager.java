@@ -1,134 +1,860 @@
 package com.studyplanner.models;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.GZIPInputStream;
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 import com.studyplanner.models.*;
 
 // ===================== MAIN PLANNER MANAGER (SINGLETON) =====================
+// Safe for concurrent use. Entities live in id-indexed tables with lock-free reads; the
+// secondary indexes guard themselves with read/write locks, so readers never queue behind
+// one another. Session admission is serialized so a conflict check and the insert it
+// guards happen atomically, and checkpoints wait for in-flight journaled mutations.
+// Observers hear about changes through an asynchronous event bus. Multi-group deployments
+// run one instance per group instead (see ShardedPlanner).
 public class PlannerManager implements Subject {
-    private static PlannerManager instance;
-    private List<StudyTask> tasks;
-    private List<Session> sessions;
-    private List<RevisionPlan> revisionPlans;
-    private List<GroupMember> groupMembers;
-    private List<Resource> resources;
-    private CompositeGroup mainGroup;
-    private RevisionAlgorithm revisionAlgorithm;
-    private List<Observer> observers;
-    private ConflictDetector conflictDetector;
-    private AnalyticsEngine analyticsEngine;
+    private static class Holder {
+        static final PlannerManager INSTANCE = new PlannerManager();
+    }
+    
+    private final IntIndex<StudyTask> taskIndex;
+    private final IntIndex<Session> sessionById;
+    private final IntIndex<Resource> resourceById;
+    private final IntIndex<GroupMember> memberById;
+    private final IntIndex<RevisionPlan> revisionPlanByTask;
+    private volatile CompositeGroup mainGroup;
+    private volatile RevisionAlgorithm revisionAlgorithm;
+    private final PlannerEventBus eventBus;
+    private final ConflictDetector conflictDetector;
+    private final AnalyticsEngine analyticsEngine;
+    private final SessionIntervalIndex sessionIndex;
+    private final RevisionSchedule revisionSchedule;
+    private final TaskSearchIndex searchIndex;
+    private final ProgressCounters progress;
+    private final SessionHistograms histograms;
+    private final DependencyOrder dependencyOrder;
+    private final ReadyQueue readyQueue;
+    private volatile ConflictPolicy conflictPolicy;
+    private final EntityChangeHandler changeHandler = new EntityChangeHandler();
+    private final Object sessionAdmissionLock = new Object();
+    // Sessions being moved by applyReschedule; their transient overlaps are not reported.
+    private final Set<Integer> movingSessions = ConcurrentHashMap.newKeySet();
+    private final ReentrantReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+    private volatile PlannerJournal journal;
+    private final ChangeLog changeLog = new ChangeLog();
+    private final PlannerMetrics metrics = new PlannerMetrics();
+    private final LatencyHistogram addTaskLatency = metrics.timer("addTask");
+    private final LatencyHistogram addTasksLatency = metrics.timer("addTasks");
+    private final LatencyHistogram addSessionLatency = metrics.timer("addSession");
+    private final LatencyHistogram addSessionsLatency = metrics.timer("addSessions");
+    private final LatencyHistogram detectConflictsLatency = metrics.timer("detectConflicts");
+    private final LatencyHistogram searchLatency = metrics.timer("searchTasks");
+    private final LatencyHistogram exportLatency = metrics.timer("exportData");
+    private final LatencyHistogram importLatency = metrics.timer("importData");
     
     private PlannerManager() {
-        this.tasks = new ArrayList<>();
-        this.sessions = new ArrayList<>();
-        this.revisionPlans = new ArrayList<>();
-        this.groupMembers = new ArrayList<>();
-        this.resources = new ArrayList<>();
-        this.mainGroup = new CompositeGroup("Main Study Group");
+        this(new CompositeGroup("Main Study Group"), PlannerMetrics.OBJECT_NAME);
+    }
+    
+    // A planner for one group, as run by a PlannerShard. Members already in the group are
+    // registered; its metrics are published under the group's name.
+    PlannerManager(CompositeGroup group) {
+        this(group, PlannerMetrics.OBJECT_NAME + ",shard=" + ObjectName.quote(group.getName()));
+        for (GroupMember member : group.getAllMembers()) {
+            memberById.put(member.getId(), member);
+        }
+    }
+    
+    private PlannerManager(CompositeGroup group, String metricsName) {
+        this.taskIndex = new IntIndex<>();
+        this.sessionById = new IntIndex<>();
+        this.resourceById = new IntIndex<>();
+        this.memberById = new IntIndex<>();
+        this.revisionPlanByTask = new IntIndex<>();
+        this.mainGroup = group;
         this.revisionAlgorithm = new LeitnerRevisionAlgorithm();
-        this.observers = new ArrayList<>();
-        this.conflictDetector = new ConflictDetector(sessions, resources, groupMembers);
+        this.eventBus = new PlannerEventBus();
+        this.sessionIndex = new SessionIntervalIndex();
+        this.revisionSchedule = new RevisionSchedule();
+        this.searchIndex = new TaskSearchIndex();
+        this.progress = new ProgressCounters();
+        this.histograms = new SessionHistograms(taskIndex::get);
+        this.dependencyOrder = new DependencyOrder();
+        this.readyQueue = new ReadyQueue();
+        this.conflictPolicy = new ReportConflictPolicy();
+        this.conflictDetector = new ConflictDetector(sessionIndex, sessionById::get, this::applyReschedule,
+            resourceById, memberById);
         this.analyticsEngine = new AnalyticsEngine();
+        registerMetrics(metricsName);
     }
     
-    public static PlannerManager getInstance() {
-        if (instance == null) {
-            instance = new PlannerManager();
+    private void registerMetrics(String name) {
+        metrics.gauge("tasks", taskIndex::size);
+        metrics.gauge("sessions", sessionById::size);
+        metrics.gauge("resources", resourceById::size);
+        metrics.gauge("groupMembers", memberById::size);
+        metrics.gauge("revisionPlans", revisionPlanByTask::size);
+        metrics.gauge("readyTasks", () -> readyQueue.getReady().size());
+        metrics.gauge("droppedLogEntries", () -> Logger.getInstance().getDroppedCount());
+        try {
+            metrics.register(name);
+        } catch (JMException e) {
+            Logger.getInstance().log(LogLevel.WARN, "Metrics MBean not registered: " + e.getMessage());
         }
-        return instance;
+        long dumpSeconds = Long.getLong("studyplanner.metrics.dumpSeconds", 0);
+        if (dumpSeconds > 0) {
+            metrics.startReporting(Duration.ofSeconds(dumpSeconds));
+        }
+    }
+    
+    public static PlannerManager getInstance() {
+        return Holder.INSTANCE;
     }
     
     @Override
     public void addObserver(Observer observer) {
-        observers.add(observer);
+        eventBus.addObserver(observer);
+    }
+    
+    // Subscribes to the given topics only.
+    public void addObserver(Observer observer, EventTopic first, EventTopic... rest) {
+        eventBus.addObserver(observer, first, rest);
     }
     
     @Override
     public void removeObserver(Observer observer) {
-        observers.remove(observer);
+        eventBus.removeObserver(observer);
     }
     
+    // Observers are notified asynchronously, in batches.
     @Override
     public void notifyObservers(String message) {
-        for (Observer observer : observers) {
-            observer.update(message);
-        }
+        eventBus.notifyObservers(message);
     }
     
+    public void flushEvents() throws InterruptedException {
+        eventBus.flush();
+    }
+    
+    private static final ValidationChain TASK_VALIDATOR = new TaskValidationChain();
+    private static final ValidationChain SESSION_VALIDATOR = new SessionValidationChain();
+    private static final int PARALLEL_VALIDATION_THRESHOLD = 256;
+    
     public void addTask(StudyTask task) {
-        ValidationChain validator = new TaskValidationChain();
-        if (validator.validate(task)) {
-            tasks.add(task);
-            revisionPlans.add(new RevisionPlan(task.getId()));
-            notifyObservers("New task added: " + task.getTitle());
-            Logger.getInstance().log("Task added: " + task.getTitle());
+        long started = metrics.start();
+        try {
+            if (TASK_VALIDATOR.validate(task)) {
+                checkpointLock.readLock().lock();
+                try {
+                    taskIndex.put(task.getId(), task);
+                    searchIndex.add(task);
+                    progress.addTask(task);
+                    dependencyOrder.add(task);
+                    readyQueue.add(task);
+                    RevisionPlan plan = new RevisionPlan(task.getId());
+                    revisionPlanByTask.put(plan.getTaskId(), plan);
+                    revisionSchedule.add(plan);
+                    task.addListener(changeHandler);
+                    changeLog.taskInserted(task);
+                    PlannerJournal journal = this.journal;
+                    if (journal != null) {
+                        journal.logTaskAdded(task, plan);
+                    }
+                } finally {
+                    checkpointLock.readLock().unlock();
+                }
+                maybeCheckpoint();
+                eventBus.publish(EventTopic.TASK, "New task added: " + task.getTitle());
+                Logger.getInstance().log("Task added: " + task.getTitle());
+            } else {
+                metrics.increment("tasksRejected");
+            }
+        } finally {
+            addTaskLatency.stop(started);
         }
     }
     
+    // Bulk import: validates every task (in parallel for large batches), adds the valid ones
+    // with one pass per index, and announces the batch with a single event and log line.
+    public BatchResult<StudyTask> addTasks(Collection<? extends StudyTask> tasks) {
+        long started = metrics.start();
+        try {
+            List<StudyTask> items = new ArrayList<>(tasks);
+            List<List<String>> errors = validateAll(items, TASK_VALIDATOR);
+            BatchResult<StudyTask> result = new BatchResult<>();
+            for (int i = 0; i < items.size(); i++) {
+                if (errors.get(i).isEmpty()) {
+                    result.accept(items.get(i));
+                } else {
+                    result.reject(new ValidationError(i, items.get(i).getId(), errors.get(i)));
+                }
+            }
+            List<StudyTask> accepted = result.getAccepted();
+            List<RevisionPlan> plans = new ArrayList<>(accepted.size());
+            checkpointLock.readLock().lock();
+            try {
+                for (StudyTask task : accepted) {
+                    taskIndex.put(task.getId(), task);
+                    progress.addTask(task);
+                    dependencyOrder.add(task);
+                    readyQueue.add(task);
+                    RevisionPlan plan = new RevisionPlan(task.getId());
+                    revisionPlanByTask.put(plan.getTaskId(), plan);
+                    plans.add(plan);
+                    task.addListener(changeHandler);
+                }
+                searchIndex.addAll(accepted);
+                revisionSchedule.addAll(plans);
+                changeLog.tasksInserted(accepted);
+                PlannerJournal journal = this.journal;
+                if (journal != null) {
+                    for (int i = 0; i < accepted.size(); i++) {
+                        journal.logTaskAdded(accepted.get(i), plans.get(i));
+                    }
+                }
+            } finally {
+                checkpointLock.readLock().unlock();
+            }
+            maybeCheckpoint();
+            eventBus.publish(EventTopic.TASK, "Tasks imported: " + result);
+            Logger.getInstance().log("Tasks imported: " + result);
+            return result;
+        } finally {
+            addTasksLatency.stop(started);
+        }
+    }
+    
+    // Bulk counterpart of addSession. Conflicts are checked in batch order, so sessions in the
+    // same batch are checked against each other too; ones the policy refuses are reported
+    // as errors alongside the validation failures.
+    public BatchResult<Session> addSessions(Collection<? extends Session> sessions) {
+        long started = metrics.start();
+        try {
+            List<Session> items = new ArrayList<>(sessions);
+            List<List<String>> errors = validateAll(items, SESSION_VALIDATOR);
+            BatchResult<Session> result = new BatchResult<>();
+            int conflicting = 0;
+            checkpointLock.readLock().lock();
+            try {
+                synchronized (sessionAdmissionLock) {
+                    for (int i = 0; i < items.size(); i++) {
+                        Session session = items.get(i);
+                        if (!errors.get(i).isEmpty()) {
+                            result.reject(new ValidationError(i, session.getId(), errors.get(i)));
+                            continue;
+                        }
+                        List<SessionConflict> conflicts = conflictDetector.findConflicts(session);
+                        if (!conflicts.isEmpty()) {
+                            if (!conflictPolicy.accept(session, conflicts)) {
+                                List<String> messages = new ArrayList<>(conflicts.size());
+                                for (SessionConflict conflict : conflicts) {
+                                    messages.add(conflict.getMessage());
+                                }
+                                result.reject(new ValidationError(i, session.getId(), messages));
+                                continue;
+                            }
+                            conflicting++;
+                        }
+                        indexSession(session);
+                        for (Resource resource : session.getResources()) {
+                            resource.addSession(session);
+                        }
+                        changeLog.sessionInserted(session);
+                        result.accept(session);
+                    }
+                }
+                PlannerJournal journal = this.journal;
+                if (journal != null) {
+                    for (Session session : result.getAccepted()) {
+                        journal.logSessionAdded(session);
+                    }
+                }
+            } finally {
+                checkpointLock.readLock().unlock();
+            }
+            maybeCheckpoint();
+            eventBus.publish(EventTopic.SESSION, "Sessions imported: " + result
+                + (conflicting > 0 ? ", " + conflicting + " with conflicts" : ""));
+            Logger.getInstance().log("Sessions imported: " + result);
+            return result;
+        } finally {
+            addSessionsLatency.stop(started);
+        }
+    }
+    
+    private static List<List<String>> validateAll(List<?> items, ValidationChain validator) {
+        IntStream indexes = IntStream.range(0, items.size());
+        if (items.size() >= PARALLEL_VALIDATION_THRESHOLD) {
+            indexes = indexes.parallel();
+        }
+        return indexes.mapToObj(i -> validator.check(items.get(i))).collect(Collectors.toList());
+    }
+    
+    // Term, prefix* and "phrase" queries over title, description and tags, best match first.
     public List<StudyTask> searchTasks(String query) {
-        return tasks.stream()
-            .filter(task -> StringUtils.matchesPattern(task.getTitle(), query) || 
-                           StringUtils.matchesPattern(task.getDescription(), query))
+        long started = metrics.start();
+        try {
+            return searchIndex.search(query);
+        } finally {
+            searchLatency.stop(started);
+        }
+    }
+    
+    // Slow path: scans every task, but compiles the pattern only once per query.
+    public List<StudyTask> searchTasksRegex(String regex) {
+        Pattern pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
+        return taskIndex.values().stream()
+            .filter(task -> StringUtils.matchesPattern(task.getTitle(), pattern) || 
+                           StringUtils.matchesPattern(task.getDescription(), pattern))
             .collect(Collectors.toList());
     }
     
-    public void addSession(Session session) {
-        ValidationChain validator = new SessionValidationChain();
-        if (validator.validate(session)) {
-            sessions.add(session);
-            notifyObservers("New session scheduled");
+    public boolean addSession(Session session) {
+        long started = metrics.start();
+        try {
+            if (!SESSION_VALIDATOR.validate(session)) {
+                metrics.increment("sessionsRejected");
+                return false;
+            }
+            List<SessionConflict> conflicts;
+            checkpointLock.readLock().lock();
+            try {
+                synchronized (sessionAdmissionLock) {
+                    conflicts = conflictDetector.findConflicts(session);
+                    if (!conflicts.isEmpty() && !conflictPolicy.accept(session, conflicts)) {
+                        eventBus.publish(EventTopic.CONFLICT, "Session rejected: " + conflicts.size() + " conflict(s)");
+                        metrics.increment("sessionsRejected");
+                        return false;
+                    }
+                    indexSession(session);
+                    for (Resource resource : session.getResources()) {
+                        resource.addSession(session);
+                    }
+                    changeLog.sessionInserted(session);
+                }
+                PlannerJournal journal = this.journal;
+                if (journal != null) {
+                    journal.logSessionAdded(session);
+                }
+            } finally {
+                checkpointLock.readLock().unlock();
+            }
+            maybeCheckpoint();
+            eventBus.publish(EventTopic.SESSION, "New session scheduled");
+            if (!conflicts.isEmpty()) {
+                eventBus.publish(EventTopic.CONFLICT, "Session " + session.getId() + " conflicts with " + conflicts.size() + " session(s)");
+            }
             Logger.getInstance().log("Session added for task ID: " + session.getTaskId());
+            return true;
+        } finally {
+            addSessionLatency.stop(started);
+        }
+    }
+    
+    private void indexSession(Session session) {
+        sessionById.put(session.getId(), session);
+        sessionIndex.add(session);
+        progress.addSession(session);
+        histograms.add(session);
+        session.addListener(changeHandler);
+    }
+    
+    // Keeps indexes and the journal in step with edits made directly on planner entities.
+    private class EntityChangeHandler implements SessionListener, TaskListener {
+        @Override
+        public void sessionRescheduled(Session session) {
+            if (!sessionIndex.contains(session)) {
+                return;
+            }
+            sessionIndex.add(session);
+            changeLog.sessionUpdated(session);
+            PlannerJournal journal = PlannerManager.this.journal;
+            if (journal != null) {
+                journal.logSessionTimes(session);
+            }
+            if (movingSessions.contains(session.getId())) {
+                return;
+            }
+            if (journal != null) {
+                maybeCheckpoint();
+            }
+            List<SessionConflict> conflicts = conflictDetector.findConflicts(session);
+            if (!conflicts.isEmpty()) {
+                conflictPolicy.accept(session, conflicts);
+                eventBus.publish(EventTopic.CONFLICT, "Rescheduled session " + session.getId() + " conflicts with " + conflicts.size() + " session(s)");
+            }
+        }
+        
+        @Override
+        public void sessionStatusChanged(Session session, SessionStatus previous) {
+            if (!sessionById.contains(session.getId())) {
+                return;
+            }
+            changeLog.sessionUpdated(session);
+            PlannerJournal journal = PlannerManager.this.journal;
+            if (journal != null) {
+                journal.logSessionStatus(session);
+                maybeCheckpoint();
+            }
+        }
+        
+        @Override
+        public void taskTextChanged(StudyTask task) {
+            if (!taskIndex.contains(task.getId())) {
+                return;
+            }
+            changeLog.taskUpdated(task);
+            PlannerJournal journal = PlannerManager.this.journal;
+            if (journal != null) {
+                journal.logTaskText(task);
+                maybeCheckpoint();
+            }
+        }
+        
+        @Override
+        public void taskStatusChanged(StudyTask task, TaskStatus previous) {
+            if (!taskIndex.contains(task.getId())) {
+                return;
+            }
+            changeLog.taskUpdated(task);
+            PlannerJournal journal = PlannerManager.this.journal;
+            if (journal != null) {
+                journal.logTaskStatus(task);
+                maybeCheckpoint();
+            }
+        }
+        
+        @Override
+        public void taskEstimateChanged(StudyTask task, Difficulty previousDifficulty, double previousHours) {
+            taskReplaced(task);
         }
+
+        @Override
+        public void taskDetailsChanged(StudyTask task) {
+            taskReplaced(task);
+        }
+
+        @Override
+        public void taskDependencyAdded(StudyTask task, StudyTask dependency) {
+            taskReplaced(task);
+        }
+
+        @Override
+        public void sessionDetailsChanged(Session session) {
+            if (!sessionById.contains(session.getId())) {
+                return;
+            }
+            changeLog.sessionUpdated(session);
+            PlannerJournal journal = PlannerManager.this.journal;
+            if (journal != null) {
+                journal.logSessionReplaced(session);
+                maybeCheckpoint();
+            }
+        }
+
+        private void taskReplaced(StudyTask task) {
+            if (!taskIndex.contains(task.getId())) {
+                return;
+            }
+            changeLog.taskUpdated(task);
+            PlannerJournal journal = PlannerManager.this.journal;
+            if (journal != null) {
+                journal.logTaskReplaced(task);
+                maybeCheckpoint();
+            }
+        }
+    }
+    
+    // Takes the task and its revision plan out of every index. Refused while other tasks still
+    // depend on it; sessions booked for it are left alone.
+    public boolean removeTask(int taskId) {
+        StudyTask task;
+        checkpointLock.readLock().lock();
+        try {
+            task = taskIndex.get(taskId);
+            if (task == null) {
+                return false;
+            }
+            if (dependencyOrder.hasDependents(task)) {
+                throw new IllegalStateException("Other tasks depend on task " + taskId);
+            }
+            taskIndex.remove(taskId);
+            task.removeListener(changeHandler);
+            searchIndex.remove(task);
+            progress.removeTask(task);
+            dependencyOrder.remove(task);
+            readyQueue.remove(task);
+            RevisionPlan plan = revisionPlanByTask.remove(taskId);
+            if (plan != null) {
+                revisionSchedule.remove(plan);
+            }
+            changeLog.taskDeleted(task);
+            PlannerJournal journal = this.journal;
+            if (journal != null) {
+                journal.logTaskRemoved(taskId);
+            }
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+        maybeCheckpoint();
+        eventBus.publish(EventTopic.TASK, "Task removed: " + task.getTitle());
+        Logger.getInstance().log("Task removed: " + task.getTitle());
+        return true;
+    }
+    
+    public boolean removeSession(int sessionId) {
+        Session session;
+        checkpointLock.readLock().lock();
+        try {
+            synchronized (sessionAdmissionLock) {
+                session = sessionById.remove(sessionId);
+                if (session == null) {
+                    return false;
+                }
+                session.removeListener(changeHandler);
+                sessionIndex.remove(session);
+                progress.removeSession(session);
+                histograms.remove(session);
+                for (Resource resource : session.getResources()) {
+                    resource.removeSession(session);
+                }
+                changeLog.sessionDeleted(session);
+            }
+            PlannerJournal journal = this.journal;
+            if (journal != null) {
+                journal.logSessionRemoved(sessionId);
+            }
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+        maybeCheckpoint();
+        eventBus.publish(EventTopic.SESSION, "Session " + sessionId + " removed");
+        Logger.getInstance().log("Session removed for task ID: " + session.getTaskId());
+        return true;
     }
     
     public void addGroupMember(GroupMember member) {
-        groupMembers.add(member);
-        mainGroup.addMember(member);
-        notifyObservers("New member added: " + member.getName());
+        checkpointLock.readLock().lock();
+        try {
+            memberById.put(member.getId(), member);
+            CompositeGroup group = mainGroup;
+            synchronized (group) {
+                group.addMember(member);
+            }
+            PlannerJournal journal = this.journal;
+            if (journal != null) {
+                journal.logMemberAdded(member);
+            }
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+        maybeCheckpoint();
+        eventBus.publish(EventTopic.MEMBER, "New member added: " + member.getName());
     }
     
     public void addResource(Resource resource) {
-        resources.add(resource);
+        checkpointLock.readLock().lock();
+        try {
+            resourceById.put(resource.getId(), resource);
+            PlannerJournal journal = this.journal;
+            if (journal != null) {
+                journal.logResourceAdded(resource);
+            }
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+        maybeCheckpoint();
         Logger.getInstance().log("Resource added: " + resource.getName());
     }
     
     public List<StudyTask> getTodaysRevisions() {
-        return analyticsEngine.getRecommendedRevisions(tasks, revisionPlans);
+        return analyticsEngine.getRecommendedRevisions(revisionSchedule, taskIndex::get);
+    }
+    
+    public List<StudyTask> getRevisionsDueWithin(int days) {
+        return analyticsEngine.getUpcomingRevisions(revisionSchedule, taskIndex::get, days);
     }
     
     public void markRevisionComplete(int taskId) {
-        revisionPlans.stream()
-            .filter(plan -> plan.getTaskId() == taskId)
-            .findFirst()
-            .ifPresent(plan -> {
-                plan.markRevised(revisionAlgorithm);
-                notifyObservers("Revision completed for task ID: " + taskId);
-            });
+        RevisionPlan plan = revisionPlanByTask.get(taskId);
+        if (plan != null) {
+            checkpointLock.readLock().lock();
+            try {
+                synchronized (plan) {
+                    plan.markRevised(revisionAlgorithm);
+                }
+                PlannerJournal journal = this.journal;
+                if (journal != null) {
+                    journal.logRevisionCompleted(plan);
+                }
+            } finally {
+                checkpointLock.readLock().unlock();
+            }
+            maybeCheckpoint();
+            eventBus.publish(EventTopic.REVISION, "Revision completed for task ID: " + taskId);
+        }
     }
     
     public Map<String, Object> getProgressReport() {
-        return analyticsEngine.generateProgressReport(tasks, sessions);
+        return analyticsEngine.generateProgressReport(progress);
     }
     
     public String getProductivityHeatmap() {
-        return analyticsEngine.generateProductivityHeatmap(sessions);
+        LocalDate today = LocalDate.now();
+        LocalDate from = today.minusDays(6);
+        return analyticsEngine.generateProductivityHeatmap(histograms.getHistogram(from, today), from, today, "Last 7 Days");
+    }
+    
+    public String getProductivityHeatmap(LocalDate from, LocalDate to) {
+        return analyticsEngine.generateProductivityHeatmap(histograms.getHistogram(from, to), from, to,
+            from + " to " + to);
+    }
+    
+    public String getMemberHeatmap(int memberId, LocalDate from, LocalDate to) {
+        GroupMember member = memberById.get(memberId);
+        String name = member != null ? member.getName() : "member " + memberId;
+        return analyticsEngine.generateProductivityHeatmap(histograms.getMemberHistogram(memberId, from, to), from, to,
+            name + ", " + from + " to " + to);
+    }
+    
+    public String getSubjectHeatmap(String subject, LocalDate from, LocalDate to) {
+        return analyticsEngine.generateProductivityHeatmap(histograms.getSubjectHistogram(subject, from, to), from, to,
+            subject + ", " + from + " to " + to);
+    }
+    
+    // Every task after all of the tasks it depends on.
+    public List<StudyTask> getTopologicalOrder() {
+        return dependencyOrder.getOrder();
+    }
+    
+    // Longest dependency chain by estimated hours; nothing on it can slip without delaying the plan.
+    public List<StudyTask> getCriticalPath() {
+        return dependencyOrder.getCriticalPath();
+    }
+    
+    public double getCriticalPathHours() {
+        return getCriticalPath().stream().mapToDouble(StudyTask::getEstimatedHours).sum();
+    }
+    
+    // TODO tasks whose dependencies are all done, easiest first.
+    public List<StudyTask> getReadyTasks() {
+        return readyQueue.getReady();
+    }
+    
+    public StudyTask getNextTask() {
+        return readyQueue.peek();
+    }
+    
+    // Moves the next ready task to IN_PROGRESS and returns it, or null if none is ready.
+    public synchronized StudyTask startNextTask() {
+        StudyTask next = readyQueue.peek();
+        if (next != null) {
+            next.setStatus(TaskStatus.IN_PROGRESS);
+        }
+        return next;
+    }
+    
+    public void addDependency(int taskId, int dependencyId) {
+        StudyTask task = taskIndex.get(taskId);
+        StudyTask dependency = taskIndex.get(dependencyId);
+        if (task == null || dependency == null) {
+            throw new IllegalArgumentException("Unknown task id: " + (task == null ? taskId : dependencyId));
+        }
+        task.addDependency(dependency);
     }
     
     public List<String> detectConflicts() {
-        return conflictDetector.detectConflicts();
+        long started = metrics.start();
+        try {
+            return conflictDetector.detectConflicts();
+        } finally {
+            detectConflictsLatency.stop(started);
+        }
+    }
+    
+    public Iterable<SessionConflict> findConflicts() {
+        return conflictDetector.findConflicts();
+    }
+    
+    public List<SessionMove> proposeReschedule() {
+        return conflictDetector.proposeReschedule();
+    }
+    
+    // Applies proposed moves as one admission step, so no session is admitted against a
+    // half-moved schedule. Moves whose session has changed since the proposal are skipped.
+    public int applyReschedule(List<SessionMove> moves) {
+        int applied = 0;
+        synchronized (sessionAdmissionLock) {
+            for (SessionMove move : moves) {
+                Session session = move.getSession();
+                if (!sessionById.contains(session.getId()) || !move.isCurrent()) {
+                    continue;
+                }
+                movingSessions.add(session.getId());
+                try {
+                    move.apply();
+                } finally {
+                    movingSessions.remove(session.getId());
+                }
+                applied++;
+            }
+        }
+        maybeCheckpoint();
+        if (applied > 0) {
+            eventBus.publish(EventTopic.CONFLICT, "Rescheduled " + applied + " session(s) to resolve conflicts");
+            Logger.getInstance().log("Applied " + applied + " of " + moves.size() + " proposed session moves");
+        }
+        return applied;
+    }
+    
+    public List<Session> getSessionsBetween(LocalDateTime from, LocalDateTime to) {
+        return conflictDetector.getSessionsBetween(from, to);
     }
     
     public String exportData(String format) {
-        StudyPlanExporter exporter = new StudyPlanExporter();
-        return exporter.export(new ArrayList<>(tasks), format);
+        long started = metrics.start();
+        try {
+            StudyPlanExporter exporter = new StudyPlanExporter();
+            return exporter.export(taskIndex.values(), format);
+        } finally {
+            exportLatency.stop(started);
+        }
+    }
+    
+    public void exportData(String format, Writer out) throws IOException {
+        long started = metrics.start();
+        try {
+            new StudyPlanExporter().export(taskIndex, format, out);
+        } finally {
+            exportLatency.stop(started);
+        }
+    }
+    
+    public void exportData(String format, Path file, boolean gzip) throws IOException {
+        long started = metrics.start();
+        try {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                new StudyPlanExporter().export(taskIndex, format, channel, gzip);
+            }
+            Logger.getInstance().log("Data exported to: " + file);
+        } finally {
+            exportLatency.stop(started);
+        }
+    }
+    
+    // Sessions in the same CSV/JSON layout as tasks, for importData.
+    public void exportSessions(String format, Path file, boolean gzip) throws IOException {
+        long started = metrics.start();
+        try {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                new SessionPlanExporter().export(sessionById, format, channel, gzip);
+            }
+            Logger.getInstance().log("Sessions exported to: " + file);
+        } finally {
+            exportLatency.stop(started);
+        }
+    }
+    
+    // Version of the most recent tracked change to a task or session.
+    public long getChangeVersion() {
+        return changeLog.getVersion();
+    }
+    
+    // Tasks and sessions inserted, updated or deleted after the given version, then the new
+    // watermark to pass next time. A version the change log cannot answer gets every current
+    // record as a reset: one older than the log (0 on a first sync, or a watermark from before
+    // the planner was last loaded), or one newer than it (a watermark kept across a restart,
+    // since the clock is seeded afresh each run and the log never issued that version).
+    public long exportChangesSince(long version, String format, Writer out) throws IOException {
+        long started = metrics.start();
+        try {
+            long watermark = changeLog.getVersion();
+            boolean reset = version < changeLog.getBaseVersion() || version > watermark;
+            Stream<EntityChange> changes;
+            if (reset) {
+                changes = Stream.concat(
+                    StreamSupport.stream(taskIndex.spliterator(), false).map(task ->
+                        new EntityChange(ChangeKind.INSERTED, "TASK", task.getId(), task.getVersion(), task)),
+                    StreamSupport.stream(sessionById.spliterator(), false).map(session ->
+                        new EntityChange(ChangeKind.INSERTED, "SESSION", session.getId(), session.getVersion(), session)));
+            } else {
+                // Records both inserted and deleted since the reader's version are left out.
+                changes = changeLog.between(version, watermark).stream()
+                    .filter(entry -> entry.record != null || entry.insertedVersion <= version)
+                    .map(entry -> new EntityChange(entry.kindSince(version), entry.task ? "TASK" : "SESSION",
+                        entry.id, entry.version, entry.record));
+            }
+            Iterable<EntityChange> items = changes::iterator;
+            new ChangeSetExporter(version, watermark, reset).export(items, format, out);
+            return watermark;
+        } finally {
+            exportLatency.stop(started);
+        }
+    }
+    
+    public String exportChangesSince(long version, String format) {
+        StringWriter out = new StringWriter();
+        try {
+            exportChangesSince(version, format, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+    
+    // Streams a CSV or JSON export back in; see StudyPlanImporter.
+    public StudyPlanImporter importData(String format, Reader in) throws IOException {
+        long started = metrics.start();
+        try {
+            StudyPlanImporter importer = new StudyPlanImporter(this);
+            importer.read(in, format);
+            Logger.getInstance().log("Imported " + importer);
+            return importer;
+        } finally {
+            importLatency.stop(started);
+        }
+    }
+    
+    // The format comes from the file name: .csv or .json, optionally followed by .gz.
+    public StudyPlanImporter importData(Path file) throws IOException {
+        String name = file.getFileName().toString().toLowerCase();
+        boolean gzip = name.endsWith(".gz");
+        if (gzip) {
+            name = name.substring(0, name.length() - 3);
+        }
+        String format = name.endsWith(".csv") ? "CSV" : name.endsWith(".json") ? "JSON" : null;
+        if (format == null) {
+            throw new IllegalArgumentException("Not a .csv or .json file: " + file);
+        }
+        try (InputStream stream = Files.newInputStream(file);
+             Reader in = new InputStreamReader(gzip ? new GZIPInputStream(stream, 64 * 1024) : stream,
+                 StandardCharsets.UTF_8)) {
+            return importData(format, in);
+        }
     }
     
     public void saveToFile(String filename) {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(filename))) {
-            oos.writeObject(this);
+        try {
+            PlannerSnapshot.write(Paths.get(filename), currentState());
             Logger.getInstance().log("Data saved to: " + filename);
         } catch (IOException e) {
             Logger.getInstance().log("Error saving file: " + e.getMessage());
@@ -136,24 +862,198 @@ public class PlannerManager implements Subject {
     }
     
     public void loadFromFile(String filename) {
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(filename))) {
-            PlannerManager loaded = (PlannerManager) ois.readObject();
-            this.tasks = loaded.tasks;
-            this.sessions = loaded.sessions;
-            this.revisionPlans = loaded.revisionPlans;
-            this.groupMembers = loaded.groupMembers;
-            this.resources = loaded.resources;
+        try {
+            installState(PlannerSnapshot.read(Paths.get(filename)));
             Logger.getInstance().log("Data loaded from: " + filename);
-        } catch (IOException | ClassNotFoundException e) {
+        } catch (IOException | RuntimeException e) {
             Logger.getInstance().log("Error loading file: " + e.getMessage());
         }
     }
     
+    // Swaps in a loaded state. Readers running meanwhile may briefly see a mix of old and new.
+    // Replaces everything the planner holds; also how the benchmarks swap in generated datasets.
+    // An open journal gets a checkpoint of the new state, since none of it was journaled.
+    void installState(PlannerState loaded) {
+        checkpointLock.writeLock().lock();
+        try {
+            synchronized (sessionAdmissionLock) {
+                CompositeGroup group = new CompositeGroup(mainGroup.getName());
+                for (GroupMember member : loaded.groupMembers) {
+                    group.addMember(member);
+                }
+                this.mainGroup = group;
+                rebuildIndexes(loaded);
+                changeLog.reset();
+            }
+            PlannerJournal journal = this.journal;
+            if (journal != null) {
+                journal.checkpoint(currentState());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+    }
+    
+    private void rebuildIndexes(PlannerState loaded) {
+        detachIndexes();
+        taskIndex.clear();
+        searchIndex.clear();
+        progress.clear();
+        dependencyOrder.clear();
+        readyQueue.clear();
+        for (StudyTask task : loaded.tasks) {
+            taskIndex.put(task.getId(), task);
+            searchIndex.add(task);
+            progress.addTask(task);
+            dependencyOrder.add(task);
+            readyQueue.add(task);
+            task.addListener(changeHandler);
+        }
+        memberById.clear();
+        for (GroupMember member : loaded.groupMembers) {
+            memberById.put(member.getId(), member);
+        }
+        resourceById.clear();
+        for (Resource resource : loaded.resources) {
+            resourceById.put(resource.getId(), resource);
+        }
+        sessionById.clear();
+        sessionIndex.clear();
+        histograms.clear();
+        for (Session session : loaded.sessions) {
+            indexSession(session);
+        }
+        revisionSchedule.clear();
+        revisionPlanByTask.clear();
+        for (RevisionPlan plan : loaded.revisionPlans) {
+            revisionPlanByTask.put(plan.getTaskId(), plan);
+            revisionSchedule.add(plan);
+        }
+    }
+    
+    // Unhooks the planner and its indexes from the entities being replaced. Those objects may
+    // still be held elsewhere, and an edit made through one must not reach the new state.
+    private void detachIndexes() {
+        for (StudyTask task : taskIndex.values()) {
+            task.removeListener(changeHandler);
+            task.removeListener(searchIndex);
+            task.removeListener(progress);
+            task.removeListener(histograms);
+            task.removeListener(readyQueue);
+        }
+        for (Session session : sessionById.values()) {
+            session.removeListener(changeHandler);
+            session.removeListener(progress);
+            session.removeListener(histograms);
+        }
+        for (RevisionPlan plan : revisionPlanByTask.values()) {
+            plan.setListener(null);
+        }
+    }
+    
+    private PlannerState currentState() {
+        return new PlannerState(taskIndex.values(), sessionById.values(), revisionPlanByTask.values(),
+            memberById.values(), resourceById.values());
+    }
+    
+    // Recovers whatever the directory holds (snapshot + journal replay), then journals every
+    // further mutation there. Records reach disk in group commits every commitIntervalMillis.
+    // A directory with nothing to recover is seeded with a snapshot of the planner as it
+    // stands, so records about records already in memory replay onto something.
+    public synchronized void openJournal(Path directory, long commitIntervalMillis, int checkpointEvery) throws IOException {
+        closeJournal();
+        PlannerState recovered = new PlannerState();
+        PlannerJournal opened = PlannerJournal.open(directory, recovered, commitIntervalMillis, checkpointEvery);
+        if (!recovered.tasks.isEmpty() || !recovered.sessions.isEmpty()
+                || !recovered.groupMembers.isEmpty() || !recovered.resources.isEmpty()) {
+            installState(recovered);
+            this.journal = opened;
+        } else {
+            checkpointLock.writeLock().lock();
+            try {
+                opened.checkpoint(currentState());
+                this.journal = opened;
+            } catch (IOException e) {
+                opened.close();
+                throw e;
+            } finally {
+                checkpointLock.writeLock().unlock();
+            }
+        }
+        Logger.getInstance().log("Journal opened in: " + directory);
+    }
+    
+    public void syncJournal() throws IOException {
+        PlannerJournal journal = this.journal;
+        if (journal != null) {
+            journal.sync();
+        }
+    }
+    
+    // Waits for in-flight mutations so the snapshot and the journal sequence agree.
+    public void checkpoint() throws IOException {
+        checkpointLock.writeLock().lock();
+        try {
+            PlannerJournal journal = this.journal;
+            if (journal != null) {
+                journal.checkpoint(currentState());
+            }
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+    }
+    
+    public synchronized void closeJournal() throws IOException {
+        if (journal != null) {
+            PlannerJournal closing = journal;
+            journal = null;
+            closing.close();
+        }
+    }
+    
+    // Closes the journal, stops the event dispatcher and metrics reporting, and unregisters
+    // the metrics MBean. The planner is not used afterwards.
+    public synchronized void shutdown() throws IOException {
+        try {
+            closeJournal();
+        } finally {
+            eventBus.close();
+            metrics.stopReporting();
+            try {
+                metrics.unregister();
+            } catch (JMException e) {
+                Logger.getInstance().log(LogLevel.WARN, "Metrics MBean not unregistered: " + e.getMessage());
+            }
+        }
+    }
+    
+    private void maybeCheckpoint() {
+        PlannerJournal journal = this.journal;
+        if (journal != null && journal.needsCheckpoint()) {
+            try {
+                checkpoint();
+            } catch (IOException e) {
+                Logger.getInstance().log("Checkpoint failed: " + e.getMessage());
+            }
+        }
+    }
+    
+    // Lookups by id
+    public StudyTask getTaskById(int id) { return taskIndex.get(id); }
+    public Session getSessionById(int id) { return sessionById.get(id); }
+    public Resource getResourceById(int id) { return resourceById.get(id); }
+    public GroupMember getGroupMemberById(int id) { return memberById.get(id); }
+    public RevisionPlan getRevisionPlan(int taskId) { return revisionPlanByTask.get(taskId); }
+    
     // Getters
-    public List<StudyTask> getTasks() { return new ArrayList<>(tasks); }
-    public List<Session> getSessions() { return new ArrayList<>(sessions); }
-    public List<GroupMember> getGroupMembers() { return new ArrayList<>(groupMembers); }
-    public List<Resource> getResources() { return new ArrayList<>(resources); }
+    public List<StudyTask> getTasks() { return taskIndex.values(); }
+    public List<Session> getSessions() { return sessionById.values(); }
+    public List<GroupMember> getGroupMembers() { return memberById.values(); }
+    public List<Resource> getResources() { return resourceById.values(); }
     public CompositeGroup getMainGroup() { return mainGroup; }
+    public PlannerMetrics getMetrics() { return metrics; }
     public void setRevisionAlgorithm(RevisionAlgorithm algorithm) { this.revisionAlgorithm = algorithm; }
+    public void setConflictPolicy(ConflictPolicy policy) { this.conflictPolicy = policy; }
 }
\ No newline at end of file
@@ -0,0 +1,301 @@
+package com.studyplanner.models;
+
+import java.lang.management.ManagementFactory;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import javax.management.*;
+
+import com.studyplanner.models.*;
+
+// ===================== LATENCY HISTOGRAM =====================
+// Operation latencies in power-of-two nanosecond buckets. Recording is a handful of
+// uncontended atomic adds; percentiles are reported as the upper bound of their bucket, so
+// they are accurate to within a factor of two, which is enough to tell linear from quadratic.
+class LatencyHistogram {
+    private static final int BUCKETS = 64;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    // Records the time since a PlannerMetrics.start() value; does nothing if metrics were off.
+    public void stop(long startedNanos) {
+        if (startedNanos != PlannerMetrics.OFF) {
+            record(System.nanoTime() - startedNanos);
+        }
+    }
+
+    public void record(long nanos) {
+        int bucket = nanos <= 1 ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+        buckets.incrementAndGet(bucket);
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getMeanMicros() {
+        long n = count.sum();
+        return n == 0 ? 0 : totalNanos.sum() / 1000.0 / n;
+    }
+
+    public double getMaxMicros() {
+        return maxNanos.get() / 1000.0;
+    }
+
+    public double getPercentileMicros(double quantile) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                long upper = i >= 62 ? Long.MAX_VALUE : (2L << i) - 1;
+                return Math.min(upper, maxNanos.get()) / 1000.0;
+            }
+        }
+        return getMaxMicros();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        totalNanos.reset();
+        maxNanos.reset();
+    }
+}
+
+// ===================== PLANNER METRICS =====================
+// Latency timers, counters and gauges for the planner. Off by default (or on with
+// -Dstudyplanner.metrics=true); while off, start() is a single volatile read and stopping a
+// timer is one comparison, so instrumented code pays next to nothing. Exposed to JMX under
+// OBJECT_NAME, and optionally logged every few seconds
+// (-Dstudyplanner.metrics.dumpSeconds=n).
+class PlannerMetrics {
+    static final long OFF = Long.MIN_VALUE;
+    static final String OBJECT_NAME = "com.studyplanner:type=PlannerMetrics";
+    private static final double[] PERCENTILES = { 0.5, 0.99 };
+    private final Map<String, LatencyHistogram> timers = new ConcurrentSkipListMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+    private volatile boolean enabled = Boolean.getBoolean("studyplanner.metrics");
+    private ScheduledExecutorService reporter;
+    private ObjectName registeredName;
+
+    public long start() {
+        return enabled ? System.nanoTime() : OFF;
+    }
+
+    public LatencyHistogram timer(String name) {
+        return timers.computeIfAbsent(name, n -> new LatencyHistogram());
+    }
+
+    public void increment(String counter) {
+        if (enabled) {
+            counters.computeIfAbsent(counter, n -> new LongAdder()).increment();
+        }
+    }
+
+    // Gauges are read only when a snapshot is taken, so they cost nothing in between.
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    // Flat, name-ordered view: <timer>.count, .meanMicros, .p50Micros, .p99Micros, .maxMicros,
+    // then counters and gauges.
+    public Map<String, Object> snapshot() {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : timers.entrySet()) {
+            LatencyHistogram timer = entry.getValue();
+            String name = entry.getKey();
+            values.put(name + ".count", timer.getCount());
+            values.put(name + ".meanMicros", round(timer.getMeanMicros()));
+            for (double percentile : PERCENTILES) {
+                values.put(name + ".p" + Math.round(percentile * 100) + "Micros", round(timer.getPercentileMicros(percentile)));
+            }
+            values.put(name + ".maxMicros", round(timer.getMaxMicros()));
+        }
+        for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().sum());
+        }
+        for (Map.Entry<String, LongSupplier> entry : gauges.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().getAsLong());
+        }
+        return values;
+    }
+
+    // One line per timer that has seen traffic, then counters and gauges on one line each.
+    public String format() {
+        StringBuilder out = new StringBuilder("Planner metrics:");
+        for (Map.Entry<String, LatencyHistogram> entry : timers.entrySet()) {
+            LatencyHistogram timer = entry.getValue();
+            if (timer.getCount() > 0) {
+                out.append(String.format("%n  %-18s n=%d mean=%.1fus p50=%.1fus p99=%.1fus max=%.1fus",
+                    entry.getKey(), timer.getCount(), timer.getMeanMicros(), timer.getPercentileMicros(0.5),
+                    timer.getPercentileMicros(0.99), timer.getMaxMicros()));
+            }
+        }
+        if (!counters.isEmpty()) {
+            out.append(System.lineSeparator()).append("  counters:");
+            counters.forEach((name, value) -> out.append(' ').append(name).append('=').append(value.sum()));
+        }
+        if (!gauges.isEmpty()) {
+            out.append(System.lineSeparator()).append("  gauges:");
+            gauges.forEach((name, value) -> out.append(' ').append(name).append('=').append(value.getAsLong()));
+        }
+        return out.toString();
+    }
+
+    public void reset() {
+        timers.values().forEach(LatencyHistogram::reset);
+        counters.clear();
+    }
+
+    public synchronized void register(String objectName) throws JMException {
+        unregister();
+        ObjectName name = new ObjectName(objectName);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new PlannerMetricsMBean(this), name);
+        registeredName = name;
+    }
+
+    public synchronized void unregister() throws JMException {
+        if (registeredName != null) {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+            registeredName = null;
+        }
+    }
+
+    // Logs format() at a fixed rate while metrics are enabled.
+    public synchronized void startReporting(Duration interval) {
+        stopReporting();
+        reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "planner-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = interval.toMillis();
+        reporter.scheduleAtFixedRate(() -> {
+            if (enabled) {
+                Logger.getInstance().log(format());
+            }
+        }, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopReporting() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+}
+
+// ===================== METRICS MBEAN =====================
+// Dynamic MBean so every timer, counter and gauge shows up as its own attribute, including
+// ones registered after the bean. "Enabled" is writable; "reset" clears timers and counters.
+class PlannerMetricsMBean implements DynamicMBean {
+    private static final String ENABLED = "Enabled";
+    private final PlannerMetrics metrics;
+
+    PlannerMetricsMBean(PlannerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        if (ENABLED.equals(attribute)) {
+            return metrics.isEnabled();
+        }
+        Object value = metrics.snapshot().get(attribute);
+        if (value == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return value;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException, InvalidAttributeValueException {
+        if (!ENABLED.equals(attribute.getName())) {
+            throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+        }
+        if (!(attribute.getValue() instanceof Boolean)) {
+            throw new InvalidAttributeValueException("Enabled takes a boolean");
+        }
+        metrics.setEnabled((Boolean) attribute.getValue());
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        Map<String, Object> snapshot = metrics.snapshot();
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            if (ENABLED.equals(attribute)) {
+                list.add(new Attribute(attribute, metrics.isEnabled()));
+            } else if (snapshot.containsKey(attribute)) {
+                list.add(new Attribute(attribute, snapshot.get(attribute)));
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        AttributeList set = new AttributeList();
+        for (Attribute attribute : attributes.asList()) {
+            try {
+                setAttribute(attribute);
+                set.add(attribute);
+            } catch (JMException e) {
+                Logger.getInstance().log(LogLevel.WARN, "Metrics attribute not set: " + e.getMessage());
+            }
+        }
+        return set;
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        if ("reset".equals(actionName)) {
+            metrics.reset();
+            return null;
+        }
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        attributes.add(new MBeanAttributeInfo(ENABLED, "boolean", "Whether operations are being timed", true, true, true));
+        for (Map.Entry<String, Object> entry : metrics.snapshot().entrySet()) {
+            String type = entry.getValue() instanceof Double ? "double" : "long";
+            attributes.add(new MBeanAttributeInfo(entry.getKey(), type, entry.getKey(), true, false, false));
+        }
+        MBeanOperationInfo reset = new MBeanOperationInfo("reset", "Clears all timers and counters",
+            new MBeanParameterInfo[0], "void", MBeanOperationInfo.ACTION);
+        return new MBeanInfo(PlannerMetrics.class.getName(), "Study planner operation metrics",
+            attributes.toArray(new MBeanAttributeInfo[0]), null, new MBeanOperationInfo[] { reset }, null);
+    }
+}
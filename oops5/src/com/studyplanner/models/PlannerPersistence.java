@@ -0,0 +1,1243 @@
+package com.studyplanner.models;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+import com.studyplanner.models.*;
+
+// ===================== PLANNER STATE =====================
+// Plain holder for the entity lists that make up a planner, used when saving and restoring.
+class PlannerState implements PlannerRecordCodec.Resolver {
+    final List<StudyTask> tasks;
+    final List<Session> sessions;
+    final List<RevisionPlan> revisionPlans;
+    final List<GroupMember> groupMembers;
+    final List<Resource> resources;
+    // Built on first lookup and kept current by the add methods below.
+    private IntIndex<StudyTask> taskById;
+    private IntIndex<Session> sessionById;
+    private IntIndex<GroupMember> memberById;
+    private IntIndex<Resource> resourceById;
+    private IntIndex<RevisionPlan> planByTask;
+
+    PlannerState() {
+        this(new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+    }
+
+    PlannerState(List<StudyTask> tasks, List<Session> sessions, List<RevisionPlan> revisionPlans,
+                 List<GroupMember> groupMembers, List<Resource> resources) {
+        this.tasks = tasks;
+        this.sessions = sessions;
+        this.revisionPlans = revisionPlans;
+        this.groupMembers = groupMembers;
+        this.resources = resources;
+    }
+
+    void addTask(StudyTask task) {
+        tasks.add(task);
+        if (taskById != null) taskById.put(task.getId(), task);
+    }
+
+    void addSession(Session session) {
+        sessions.add(session);
+        if (sessionById != null) sessionById.put(session.getId(), session);
+    }
+
+    void addMember(GroupMember member) {
+        groupMembers.add(member);
+        if (memberById != null) memberById.put(member.getId(), member);
+    }
+
+    void addResource(Resource resource) {
+        resources.add(resource);
+        if (resourceById != null) resourceById.put(resource.getId(), resource);
+    }
+
+    void addRevisionPlan(RevisionPlan plan) {
+        revisionPlans.add(plan);
+        if (planByTask != null) planByTask.put(plan.getTaskId(), plan);
+    }
+
+    // Removal scans the lists, which is fine for journal replay, where it is rare.
+    void removeTask(int id) {
+        StudyTask task = task(id);
+        if (task != null) {
+            tasks.remove(task);
+            taskById.remove(id);
+        }
+        RevisionPlan plan = revisionPlan(id);
+        if (plan != null) {
+            revisionPlans.remove(plan);
+            planByTask.remove(id);
+        }
+    }
+
+    // Copies a freshly decoded task onto the one already held, keeping its identity since
+    // other tasks and sessions point at it.
+    void replaceTask(StudyTask decoded) {
+        StudyTask task = task(decoded.getId());
+        if (task == null) {
+            addTask(decoded);
+            return;
+        }
+        task.title = decoded.title;
+        task.description = decoded.description;
+        task.difficulty = decoded.difficulty;
+        task.estimatedHours = decoded.estimatedHours;
+        task.status = decoded.status;
+        task.createdDate = decoded.createdDate;
+        task.assignedTo = decoded.assignedTo;
+        task.tags.clear();
+        task.tags.addAll(decoded.tags);
+        task.dependencies.clear();
+        task.dependencies.addAll(decoded.dependencies);
+        if (task instanceof Assignment && decoded instanceof Assignment) {
+            ((Assignment) task).setDueDate(((Assignment) decoded).getDueDate());
+            ((Assignment) task).setMaxScore(((Assignment) decoded).getMaxScore());
+        } else if (task instanceof Topic && decoded instanceof Topic) {
+            ((Topic) task).setSubject(((Topic) decoded).getSubject());
+            ((Topic) task).setPriority(((Topic) decoded).getPriority());
+        }
+    }
+
+    // Decoding registered the copy with its resources, so those bookings move to the session
+    // already held; it is taken off and put back on every resource so their schedules see
+    // the new times.
+    void replaceSession(Session decoded) {
+        Session session = session(decoded.getId());
+        for (Resource resource : decoded.getResources()) {
+            resource.removeSession(decoded);
+        }
+        if (session == null) {
+            for (Resource resource : decoded.getResources()) {
+                resource.addSession(decoded);
+            }
+            addSession(decoded);
+            return;
+        }
+        for (Resource resource : session.getResources()) {
+            resource.removeSession(session);
+        }
+        session.taskId = decoded.taskId;
+        session.startTime = decoded.startTime;
+        session.endTime = decoded.endTime;
+        session.recurrence = decoded.recurrence;
+        session.location = decoded.location;
+        session.status = decoded.status;
+        session.assignedGroup.clear();
+        session.assignedGroup.addAll(decoded.assignedGroup);
+        session.resources.clear();
+        session.resources.addAll(decoded.resources);
+        for (Resource resource : session.getResources()) {
+            resource.addSession(session);
+        }
+        if (session instanceof StudySession && decoded instanceof StudySession) {
+            ((StudySession) session).setSessionType(((StudySession) decoded).getSessionType());
+        }
+    }
+
+    void removeSession(int id) {
+        Session session = session(id);
+        if (session != null) {
+            sessions.remove(session);
+            sessionById.remove(id);
+            for (Resource resource : session.getResources()) {
+                resource.removeSession(session);
+            }
+        }
+    }
+
+    @Override
+    public StudyTask task(int id) {
+        if (taskById == null) {
+            taskById = new IntIndex<>();
+            for (StudyTask task : tasks) taskById.put(task.getId(), task);
+        }
+        return taskById.get(id);
+    }
+
+    Session session(int id) {
+        if (sessionById == null) {
+            sessionById = new IntIndex<>();
+            for (Session session : sessions) sessionById.put(session.getId(), session);
+        }
+        return sessionById.get(id);
+    }
+
+    @Override
+    public GroupMember member(int id) {
+        if (memberById == null) {
+            memberById = new IntIndex<>();
+            for (GroupMember member : groupMembers) memberById.put(member.getId(), member);
+        }
+        return memberById.get(id);
+    }
+
+    @Override
+    public Resource resource(int id) {
+        if (resourceById == null) {
+            resourceById = new IntIndex<>();
+            for (Resource resource : resources) resourceById.put(resource.getId(), resource);
+        }
+        return resourceById.get(id);
+    }
+
+    RevisionPlan revisionPlan(int taskId) {
+        if (planByTask == null) {
+            planByTask = new IntIndex<>();
+            for (RevisionPlan plan : revisionPlans) planByTask.put(plan.getTaskId(), plan);
+        }
+        return planByTask.get(taskId);
+    }
+}
+
+// ===================== RECORD CODEC =====================
+// Binary layout of each entity, shared by snapshots and the journal. Other entities are
+// referenced by id rather than nested. The Encoder and Decoder are the two directions of the
+// layout; how strings are stored is left to the StringSink or StringSource they are given.
+final class PlannerRecordCodec {
+    interface Resolver {
+        StudyTask task(int id);
+        GroupMember member(int id);
+        Resource resource(int id);
+    }
+
+    interface StringSink {
+        void writeString(DataOutput out, String value) throws IOException;
+    }
+
+    interface StringSource {
+        String readString(ByteBuffer in);
+    }
+
+    static final byte TOPIC = 1;
+    static final byte ASSIGNMENT = 2;
+    static final byte STUDY_SESSION = 1;
+    static final byte BOOK = 1;
+    static final byte CLASSROOM = 2;
+    private static final long NO_VALUE = Long.MIN_VALUE;
+
+    private PlannerRecordCodec() {
+    }
+
+    static final class Encoder {
+        private final StringSink strings;
+
+        Encoder(StringSink strings) {
+            this.strings = strings;
+        }
+
+        public void writeString(DataOutput out, String value) throws IOException {
+            strings.writeString(out, value);
+        }
+
+        public void writeTask(DataOutput out, StudyTask task) throws IOException {
+            out.writeInt(task.getId());
+            out.writeByte(task instanceof Assignment ? ASSIGNMENT : TOPIC);
+            writeString(out, task.getTitle());
+            writeString(out, task.getDescription());
+            out.writeByte(task.getDifficulty().ordinal());
+            out.writeDouble(task.getEstimatedHours());
+            out.writeByte(task.getStatus().ordinal());
+            writeDate(out, task.getCreatedDate());
+            out.writeInt(task.getAssignedTo() != null ? task.getAssignedTo().getId() : 0);
+            out.writeInt(task.getTags().size());
+            for (String tag : task.getTags()) {
+                writeString(out, tag);
+            }
+            out.writeInt(task.getDependencies().size());
+            for (StudyTask dependency : task.getDependencies()) {
+                out.writeInt(dependency.getId());
+            }
+            if (task instanceof Assignment) {
+                Assignment assignment = (Assignment) task;
+                writeDate(out, assignment.getDueDate());
+                out.writeDouble(assignment.getMaxScore());
+            } else if (task instanceof Topic) {
+                Topic topic = (Topic) task;
+                writeString(out, topic.getSubject());
+                out.writeInt(topic.getPriority());
+            } else {
+                writeString(out, "General");
+                out.writeInt(1);
+            }
+        }
+
+        public void writeSession(DataOutput out, Session session) throws IOException {
+            out.writeInt(session.getId());
+            out.writeByte(STUDY_SESSION);
+            out.writeInt(session.getTaskId());
+            writeDateTime(out, session.getStartTime());
+            writeDateTime(out, session.getEndTime());
+            writeString(out, session.getLocation());
+            writeString(out, session.getRecurrence());
+            out.writeByte(session.getStatus().ordinal());
+            writeString(out, session instanceof StudySession ? ((StudySession) session).getSessionType() : "STUDY");
+            out.writeInt(session.getAssignedGroup().size());
+            for (GroupMember member : session.getAssignedGroup()) {
+                out.writeInt(member.getId());
+            }
+            out.writeInt(session.getResources().size());
+            for (Resource resource : session.getResources()) {
+                out.writeInt(resource.getId());
+            }
+        }
+
+        public void writeMember(DataOutput out, GroupMember member) throws IOException {
+            out.writeInt(member.getId());
+            writeString(out, member.getName());
+            writeString(out, member.getEmail());
+            writeString(out, member.getRole());
+            out.writeInt(member.getPerformance().size());
+            for (Map.Entry<String, Double> entry : member.getPerformance().entrySet()) {
+                writeString(out, entry.getKey());
+                out.writeDouble(entry.getValue());
+            }
+            out.writeInt(member.getAssignments().size());
+            for (StudyTask task : member.getAssignments()) {
+                out.writeInt(task.getId());
+            }
+        }
+
+        public void writeResource(DataOutput out, Resource resource) throws IOException {
+            out.writeInt(resource.getId());
+            out.writeByte(resource instanceof Classroom ? CLASSROOM : BOOK);
+            writeString(out, resource.getName());
+            out.writeBoolean(resource.isAvailable());
+            if (resource instanceof Classroom) {
+                Classroom classroom = (Classroom) resource;
+                out.writeInt(classroom.getCapacity());
+                writeString(out, classroom.getBuilding());
+            } else if (resource instanceof Book) {
+                Book book = (Book) resource;
+                writeString(out, book.getAuthor());
+                writeString(out, book.getIsbn());
+            } else {
+                writeString(out, null);
+                writeString(out, null);
+            }
+        }
+
+        public void writeRevisionPlan(DataOutput out, RevisionPlan plan) throws IOException {
+            out.writeInt(plan.getTaskId());
+            writeDate(out, plan.getNextRevisionDate());
+            out.writeInt(plan.getStage());
+            writeDate(out, plan.getLastRevisionDate());
+            out.writeInt(plan.getCompletedRevisions());
+        }
+    }
+
+    static final class Decoder {
+        private final StringSource strings;
+
+        Decoder(StringSource strings) {
+            this.strings = strings;
+        }
+
+        public String readString(ByteBuffer in) {
+            return strings.readString(in);
+        }
+
+        // Dependencies are resolved straight away unless pendingDependencies is given, in which
+        // case their ids are parked there for a second pass once every task exists.
+        public StudyTask readTask(ByteBuffer in, Resolver resolver, Map<StudyTask, int[]> pendingDependencies) {
+            int id = in.getInt();
+            byte kind = in.get();
+            String title = readString(in);
+            String description = readString(in);
+            Difficulty difficulty = Difficulty.values()[in.get()];
+            double estimatedHours = in.getDouble();
+            TaskStatus status = TaskStatus.values()[in.get()];
+            LocalDate createdDate = readDate(in);
+            int assignedTo = in.getInt();
+            List<String> tags = new ArrayList<>();
+            for (int i = in.getInt(); i > 0; i--) {
+                tags.add(readString(in));
+            }
+            int[] dependencies = new int[in.getInt()];
+            for (int i = 0; i < dependencies.length; i++) {
+                dependencies[i] = in.getInt();
+            }
+            StudyTask task;
+            if (kind == ASSIGNMENT) {
+                Assignment assignment = new Assignment(id, title, description, difficulty, estimatedHours, readDate(in));
+                assignment.setMaxScore(in.getDouble());
+                task = assignment;
+            } else {
+                Topic topic = new Topic(id, title, description, difficulty, estimatedHours, readString(in));
+                topic.setPriority(in.getInt());
+                task = topic;
+            }
+            task.status = status;
+            task.createdDate = createdDate;
+            task.tags.addAll(tags);
+            if (assignedTo != 0) {
+                task.assignedTo = resolver.member(assignedTo);
+            }
+            if (pendingDependencies != null) {
+                pendingDependencies.put(task, dependencies);
+            } else {
+                resolveTasks(task.dependencies, dependencies, resolver);
+            }
+            return task;
+        }
+
+        public Session readSession(ByteBuffer in, Resolver resolver) {
+            int id = in.getInt();
+            in.get();
+            int taskId = in.getInt();
+            LocalDateTime startTime = readDateTime(in);
+            LocalDateTime endTime = readDateTime(in);
+            StudySession session = new StudySession(id, taskId, startTime, endTime, readString(in));
+            session.recurrence = readString(in);
+            session.status = SessionStatus.values()[in.get()];
+            session.setSessionType(readString(in));
+            for (int i = in.getInt(); i > 0; i--) {
+                GroupMember member = resolver.member(in.getInt());
+                if (member != null) {
+                    session.assignedGroup.add(member);
+                }
+            }
+            for (int i = in.getInt(); i > 0; i--) {
+                Resource resource = resolver.resource(in.getInt());
+                if (resource != null) {
+                    session.addResource(resource);
+                    resource.addSession(session);
+                }
+            }
+            return session;
+        }
+
+        // Assignments point at tasks, so like task dependencies they can be deferred.
+        public GroupMember readMember(ByteBuffer in, Resolver resolver, Map<GroupMember, int[]> pendingAssignments) {
+            GroupMember member = new GroupMember(in.getInt(), readString(in), readString(in), readString(in));
+            for (int i = in.getInt(); i > 0; i--) {
+                member.addPerformance(readString(in), in.getDouble());
+            }
+            int[] assignments = new int[in.getInt()];
+            for (int i = 0; i < assignments.length; i++) {
+                assignments[i] = in.getInt();
+            }
+            if (pendingAssignments != null) {
+                pendingAssignments.put(member, assignments);
+            } else {
+                resolveTasks(member.getAssignments(), assignments, resolver);
+            }
+            return member;
+        }
+
+        public Resource readResource(ByteBuffer in) {
+            int id = in.getInt();
+            byte kind = in.get();
+            String name = readString(in);
+            boolean available = in.get() != 0;
+            Resource resource;
+            if (kind == CLASSROOM) {
+                int capacity = in.getInt();
+                resource = new Classroom(id, name, capacity, readString(in));
+            } else {
+                String author = readString(in);
+                resource = new Book(id, name, author, readString(in));
+            }
+            resource.setAvailable(available);
+            return resource;
+        }
+
+        public RevisionPlan readRevisionPlan(ByteBuffer in) {
+            int taskId = in.getInt();
+            LocalDate next = readDate(in);
+            int stage = in.getInt();
+            LocalDate last = readDate(in);
+            return new RevisionPlan(taskId, next, stage, last, in.getInt());
+        }
+    }
+
+    static void resolveTasks(Collection<StudyTask> target, int[] ids, Resolver resolver) {
+        for (int id : ids) {
+            StudyTask task = resolver.task(id);
+            if (task != null) {
+                target.add(task);
+            }
+        }
+    }
+
+    static void writeDate(DataOutput out, LocalDate date) throws IOException {
+        out.writeLong(date != null ? date.toEpochDay() : NO_VALUE);
+    }
+
+    static LocalDate readDate(ByteBuffer in) {
+        long epochDay = in.getLong();
+        return epochDay != NO_VALUE ? LocalDate.ofEpochDay(epochDay) : null;
+    }
+
+    static void writeDateTime(DataOutput out, LocalDateTime dateTime) throws IOException {
+        if (dateTime == null) {
+            out.writeLong(NO_VALUE);
+            return;
+        }
+        out.writeLong(DateUtils.toEpochSecond(dateTime));
+        out.writeInt(dateTime.getNano());
+    }
+
+    static LocalDateTime readDateTime(ByteBuffer in) {
+        long epochSecond = in.getLong();
+        if (epochSecond == NO_VALUE) {
+            return null;
+        }
+        return DateUtils.fromEpochSecond(epochSecond).withNano(in.getInt());
+    }
+}
+
+// ===================== BINARY SNAPSHOT =====================
+// Layout: magic, version, section table (id, offset, length), then the sections. Strings are
+// stored once in a string table and referenced by index. Files are read through a memory map
+// and each section is decoded only when asked for.
+class PlannerSnapshot {
+    static final int MAGIC = 0x53504C4E;
+    static final int VERSION = 1;
+    static final int STRINGS = 1;
+    static final int MEMBERS = 2;
+    static final int RESOURCES = 3;
+    static final int TASKS = 4;
+    static final int SESSIONS = 5;
+    static final int REVISIONS = 6;
+    static final int META = 7;
+    private static final int[] DATA_SECTIONS = {MEMBERS, RESOURCES, TASKS, SESSIONS, REVISIONS};
+
+    public static void write(Path file, PlannerState state) throws IOException {
+        write(file, state, 0);
+    }
+
+    // journalSequence is the last journal record already reflected in this snapshot.
+    public static void write(Path file, PlannerState state, long journalSequence) throws IOException {
+        StringTableWriter strings = new StringTableWriter();
+        PlannerRecordCodec.Encoder codec = new PlannerRecordCodec.Encoder(strings);
+        Map<Integer, byte[]> sections = new LinkedHashMap<>();
+        sections.put(MEMBERS, encode(state.groupMembers, (out, m) -> codec.writeMember(out, m)));
+        sections.put(RESOURCES, encode(state.resources, (out, r) -> codec.writeResource(out, r)));
+        sections.put(TASKS, encode(state.tasks, (out, t) -> codec.writeTask(out, t)));
+        sections.put(SESSIONS, encode(state.sessions, (out, s) -> codec.writeSession(out, s)));
+        sections.put(REVISIONS, encode(state.revisionPlans, (out, p) -> codec.writeRevisionPlan(out, p)));
+        Map<Integer, byte[]> ordered = new LinkedHashMap<>();
+        ordered.put(STRINGS, strings.toBytes());
+        ordered.putAll(sections);
+        ByteArrayOutputStream meta = new ByteArrayOutputStream();
+        new DataOutputStream(meta).writeLong(journalSequence);
+        ordered.put(META, meta.toByteArray());
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(ordered.size());
+            long offset = 12L + ordered.size() * 20L;
+            for (Map.Entry<Integer, byte[]> section : ordered.entrySet()) {
+                out.writeInt(section.getKey());
+                out.writeLong(offset);
+                out.writeLong(section.getValue().length);
+                offset += section.getValue().length;
+            }
+            for (byte[] section : ordered.values()) {
+                out.write(section);
+            }
+            out.flush();
+            channel.force(true);
+        }
+        // The snapshot must be on disk under its final name before anyone (a checkpoint)
+        // discards what it replaces.
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory(file.toAbsolutePath().getParent());
+    }
+
+    // Makes a rename in the directory durable. Not every platform can open a directory for
+    // this (Windows cannot), and there the rename is left to the file system.
+    static void syncDirectory(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (AccessDeniedException | UnsupportedOperationException e) {
+            Logger.getInstance().log(LogLevel.DEBUG, "Directory not synced: " + directory);
+        }
+    }
+
+    public static PlannerState read(Path file) throws IOException {
+        return open(file).readAll();
+    }
+
+    public static Reader open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new Reader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    private interface RecordWriter<T> {
+        void write(DataOutput out, T item) throws IOException;
+    }
+
+    private static <T> byte[] encode(Collection<T> items, RecordWriter<T> writer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(items.size());
+        for (T item : items) {
+            writer.write(out, item);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static class StringTableWriter implements PlannerRecordCodec.StringSink {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+
+        @Override
+        public void writeString(DataOutput out, String value) throws IOException {
+            if (value == null) {
+                out.writeInt(-1);
+                return;
+            }
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = strings.size();
+                ids.put(value, id);
+                strings.add(value);
+            }
+            out.writeInt(id);
+        }
+
+        // count, then count + 1 byte offsets into the UTF-8 blob that follows.
+        byte[] toBytes() throws IOException {
+            ByteArrayOutputStream blob = new ByteArrayOutputStream();
+            int[] offsets = new int[strings.size() + 1];
+            for (int i = 0; i < strings.size(); i++) {
+                blob.write(strings.get(i).getBytes(StandardCharsets.UTF_8));
+                offsets[i + 1] = blob.size();
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(strings.size());
+            for (int offset : offsets) {
+                out.writeInt(offset);
+            }
+            blob.writeTo(out);
+            out.flush();
+            return bytes.toByteArray();
+        }
+    }
+
+    static class Reader implements PlannerRecordCodec.StringSource {
+        private final Map<Integer, ByteBuffer> sections = new HashMap<>();
+        private final PlannerRecordCodec.Decoder records = new PlannerRecordCodec.Decoder(this);
+        private ByteBuffer stringTable;
+        private String[] strings;
+
+        Reader(MappedByteBuffer buffer) throws IOException {
+            if (buffer.remaining() < 12 || buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a planner snapshot");
+            }
+            int version = buffer.getInt(4);
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version: " + version);
+            }
+            int count = buffer.getInt(8);
+            for (int i = 0; i < count; i++) {
+                int entry = 12 + i * 20;
+                int id = buffer.getInt(entry);
+                long offset = buffer.getLong(entry + 4);
+                long length = buffer.getLong(entry + 12);
+                sections.put(id, buffer.slice((int) offset, (int) length));
+            }
+        }
+
+        public long journalSequence() {
+            ByteBuffer data = sections.get(META);
+            return data != null ? data.getLong(0) : 0;
+        }
+
+        // Entity count of a section, read without decoding any records.
+        public int count(int section) {
+            ByteBuffer data = sections.get(section);
+            return data != null ? data.getInt(0) : 0;
+        }
+
+        public List<GroupMember> readMembers(PlannerRecordCodec.Resolver resolver, Map<GroupMember, int[]> pendingAssignments) {
+            List<GroupMember> members = new ArrayList<>();
+            ByteBuffer in = section(MEMBERS);
+            for (int i = in.getInt(); i > 0; i--) {
+                members.add(records.readMember(in, resolver, pendingAssignments));
+            }
+            return members;
+        }
+
+        public List<Resource> readResources() {
+            List<Resource> resources = new ArrayList<>();
+            ByteBuffer in = section(RESOURCES);
+            for (int i = in.getInt(); i > 0; i--) {
+                resources.add(records.readResource(in));
+            }
+            return resources;
+        }
+
+        public List<StudyTask> readTasks(PlannerRecordCodec.Resolver resolver, Map<StudyTask, int[]> pendingDependencies) {
+            List<StudyTask> tasks = new ArrayList<>();
+            ByteBuffer in = section(TASKS);
+            for (int i = in.getInt(); i > 0; i--) {
+                tasks.add(records.readTask(in, resolver, pendingDependencies));
+            }
+            return tasks;
+        }
+
+        public List<Session> readSessions(PlannerRecordCodec.Resolver resolver) {
+            List<Session> sessions = new ArrayList<>();
+            ByteBuffer in = section(SESSIONS);
+            for (int i = in.getInt(); i > 0; i--) {
+                sessions.add(records.readSession(in, resolver));
+            }
+            return sessions;
+        }
+
+        public List<RevisionPlan> readRevisionPlans() {
+            List<RevisionPlan> plans = new ArrayList<>();
+            ByteBuffer in = section(REVISIONS);
+            for (int i = in.getInt(); i > 0; i--) {
+                plans.add(records.readRevisionPlan(in));
+            }
+            return plans;
+        }
+
+        public PlannerState readAll() {
+            PlannerState state = new PlannerState();
+            Map<GroupMember, int[]> pendingAssignments = new HashMap<>();
+            Map<StudyTask, int[]> pendingDependencies = new HashMap<>();
+            state.groupMembers.addAll(readMembers(state, pendingAssignments));
+            state.resources.addAll(readResources());
+            state.tasks.addAll(readTasks(state, pendingDependencies));
+            for (Map.Entry<StudyTask, int[]> entry : pendingDependencies.entrySet()) {
+                PlannerRecordCodec.resolveTasks(entry.getKey().dependencies, entry.getValue(), state);
+            }
+            for (Map.Entry<GroupMember, int[]> entry : pendingAssignments.entrySet()) {
+                PlannerRecordCodec.resolveTasks(entry.getKey().getAssignments(), entry.getValue(), state);
+            }
+            state.sessions.addAll(readSessions(state));
+            state.revisionPlans.addAll(readRevisionPlans());
+            return state;
+        }
+
+        private ByteBuffer section(int id) {
+            ByteBuffer data = sections.get(id);
+            if (data == null) {
+                ByteBuffer empty = ByteBuffer.allocate(4);
+                empty.putInt(0, 0);
+                return empty;
+            }
+            return data.duplicate();
+        }
+
+        @Override
+        public String readString(ByteBuffer in) {
+            int id = in.getInt();
+            if (id < 0) {
+                return null;
+            }
+            if (strings == null) {
+                stringTable = section(STRINGS);
+                strings = new String[stringTable.getInt(0)];
+            }
+            String value = strings[id];
+            if (value == null) {
+                int base = 4 + (strings.length + 1) * 4;
+                int start = stringTable.getInt(4 + id * 4);
+                int end = stringTable.getInt(8 + id * 4);
+                byte[] bytes = new byte[end - start];
+                stringTable.get(base + start, bytes);
+                value = new String(bytes, StandardCharsets.UTF_8);
+                strings[id] = value;
+            }
+            return value;
+        }
+    }
+}
+
+// ===================== MUTATION JOURNAL =====================
+// Append-only write-ahead log of planner mutations. Callers encode and enqueue records; a
+// background writer flushes whatever has accumulated with a single write and fsync (group
+// commit). A checkpoint writes a snapshot tagged with the last sequence number and empties
+// the journal; recovery loads the snapshot and replays the records that follow it.
+class PlannerJournal implements Closeable {
+    static final byte ADD_TASK = 1;
+    static final byte ADD_SESSION = 2;
+    static final byte ADD_MEMBER = 3;
+    static final byte ADD_RESOURCE = 4;
+    static final byte REVISION_COMPLETE = 5;
+    static final byte TASK_STATUS = 6;
+    static final byte SESSION_STATUS = 7;
+    static final byte SESSION_TIMES = 8;
+    static final byte TASK_TEXT = 9;
+    static final byte REMOVE_TASK = 10;
+    static final byte REMOVE_SESSION = 11;
+    static final byte TASK_REPLACED = 12;
+    static final byte SESSION_REPLACED = 13;
+
+    static final String SNAPSHOT_FILE = "planner.snapshot";
+    static final String JOURNAL_FILE = "planner.journal";
+    private static final int MAX_BATCH_BYTES = 256 * 1024;
+    private static final InlineStrings STRINGS = new InlineStrings();
+    private static final PlannerRecordCodec.Encoder ENCODER = new PlannerRecordCodec.Encoder(STRINGS);
+    private static final PlannerRecordCodec.Decoder DECODER = new PlannerRecordCodec.Decoder(STRINGS);
+
+    interface RecordBody {
+        void write(DataOutput out, PlannerRecordCodec.Encoder codec) throws IOException;
+    }
+
+    private final Path directory;
+    private final FileChannel channel;
+    private final long commitIntervalMillis;
+    private final int checkpointEvery;
+    private final Object lock = new Object();
+    private final Object ioLock = new Object();
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long lastSequence;
+    private long pendingSequence;
+    private long durableSequence;
+    private int recordsSinceCheckpoint;
+    private boolean syncRequested;
+    private boolean closed;
+    private IOException failure;
+    private final Thread writer;
+
+    private PlannerJournal(Path directory, long lastSequence, long commitIntervalMillis, int checkpointEvery) throws IOException {
+        this.directory = directory;
+        this.channel = FileChannel.open(directory.resolve(JOURNAL_FILE),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.channel.position(channel.size());
+        this.lastSequence = lastSequence;
+        this.pendingSequence = lastSequence;
+        this.durableSequence = lastSequence;
+        this.commitIntervalMillis = commitIntervalMillis;
+        this.checkpointEvery = checkpointEvery;
+        this.writer = new Thread(this::writeLoop, "planner-journal");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    // Restores the planner state kept in the directory and opens its journal for appending.
+    public static PlannerJournal open(Path directory, PlannerState recovered, long commitIntervalMillis, int checkpointEvery) throws IOException {
+        Files.createDirectories(directory);
+        long sequence = recover(directory, recovered);
+        PlannerJournal journal = new PlannerJournal(directory, sequence, commitIntervalMillis, checkpointEvery);
+        journal.recordsSinceCheckpoint = (int) Math.min(Integer.MAX_VALUE, sequence - journal.snapshotSequence());
+        return journal;
+    }
+
+    private long snapshotSequence() throws IOException {
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        return Files.exists(snapshot) ? PlannerSnapshot.open(snapshot).journalSequence() : 0;
+    }
+
+    // Fills the given state from snapshot + journal and returns the last sequence applied.
+    // A torn record at the tail (crash mid-write) is cut off so new records follow good ones.
+    static long recover(Path directory, PlannerState state) throws IOException {
+        long sequence = 0;
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshot)) {
+            PlannerSnapshot.Reader reader = PlannerSnapshot.open(snapshot);
+            PlannerState loaded = reader.readAll();
+            loaded.groupMembers.forEach(state::addMember);
+            loaded.resources.forEach(state::addResource);
+            loaded.tasks.forEach(state::addTask);
+            loaded.sessions.forEach(state::addSession);
+            loaded.revisionPlans.forEach(state::addRevisionPlan);
+            sequence = reader.journalSequence();
+        }
+        Path journal = directory.resolve(JOURNAL_FILE);
+        if (!Files.exists(journal)) {
+            return sequence;
+        }
+        try (FileChannel in = FileChannel.open(journal, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer data = ByteBuffer.allocate((int) in.size());
+            int read = 0;
+            while (data.hasRemaining() && read >= 0) {
+                read = in.read(data);
+            }
+            data.flip();
+            long validEnd = 0;
+            while (data.remaining() >= 4) {
+                int start = data.position();
+                int length = data.getInt();
+                if (length < 9 || data.remaining() < length + 4) {
+                    break;
+                }
+                ByteBuffer record = data.slice(data.position(), length);
+                data.position(data.position() + length);
+                CRC32 crc = new CRC32();
+                crc.update(record.duplicate());
+                if ((int) crc.getValue() != data.getInt()) {
+                    break;
+                }
+                byte op = record.get();
+                long recordSequence = record.getLong();
+                if (recordSequence > sequence) {
+                    apply(op, record, state);
+                    sequence = recordSequence;
+                }
+                validEnd = data.position();
+            }
+            if (validEnd < in.size()) {
+                in.truncate(validEnd);
+            }
+        }
+        return sequence;
+    }
+
+    private static void apply(byte op, ByteBuffer in, PlannerState state) {
+        switch (op) {
+            case ADD_TASK: {
+                state.addTask(DECODER.readTask(in, state, null));
+                state.addRevisionPlan(DECODER.readRevisionPlan(in));
+                break;
+            }
+            case ADD_SESSION:
+                state.addSession(DECODER.readSession(in, state));
+                break;
+            case ADD_MEMBER:
+                state.addMember(DECODER.readMember(in, state, null));
+                break;
+            case ADD_RESOURCE:
+                state.addResource(DECODER.readResource(in));
+                break;
+            case REVISION_COMPLETE: {
+                RevisionPlan revised = DECODER.readRevisionPlan(in);
+                RevisionPlan plan = state.revisionPlan(revised.getTaskId());
+                if (plan != null) {
+                    plan.restore(revised.getNextRevisionDate(), revised.getStage(),
+                        revised.getLastRevisionDate(), revised.getCompletedRevisions());
+                }
+                break;
+            }
+            case TASK_STATUS: {
+                StudyTask task = state.task(in.getInt());
+                TaskStatus status = TaskStatus.values()[in.get()];
+                if (task != null) task.status = status;
+                break;
+            }
+            case SESSION_STATUS: {
+                Session session = state.session(in.getInt());
+                SessionStatus status = SessionStatus.values()[in.get()];
+                if (session != null) session.status = status;
+                break;
+            }
+            case SESSION_TIMES: {
+                Session session = state.session(in.getInt());
+                LocalDateTime start = PlannerRecordCodec.readDateTime(in);
+                LocalDateTime end = PlannerRecordCodec.readDateTime(in);
+                if (session != null) {
+                    session.startTime = start;
+                    session.endTime = end;
+                }
+                break;
+            }
+            case TASK_TEXT: {
+                StudyTask task = state.task(in.getInt());
+                String title = DECODER.readString(in);
+                String description = DECODER.readString(in);
+                List<String> tags = new ArrayList<>();
+                for (int i = in.getInt(); i > 0; i--) {
+                    tags.add(DECODER.readString(in));
+                }
+                if (task != null) {
+                    task.title = title;
+                    task.description = description;
+                    task.tags.clear();
+                    task.tags.addAll(tags);
+                }
+                break;
+            }
+            case REMOVE_TASK:
+                state.removeTask(in.getInt());
+                break;
+            case REMOVE_SESSION:
+                state.removeSession(in.getInt());
+                break;
+            case TASK_REPLACED:
+                state.replaceTask(DECODER.readTask(in, state, null));
+                break;
+            case SESSION_REPLACED:
+                state.replaceSession(DECODER.readSession(in, state));
+                break;
+            default:
+                throw new IllegalStateException("Unknown journal record type: " + op);
+        }
+    }
+
+    public void logTaskAdded(StudyTask task, RevisionPlan plan) {
+        append(ADD_TASK, (out, codec) -> {
+            codec.writeTask(out, task);
+            codec.writeRevisionPlan(out, plan);
+        });
+    }
+
+    public void logSessionAdded(Session session) {
+        append(ADD_SESSION, (out, codec) -> codec.writeSession(out, session));
+    }
+
+    public void logMemberAdded(GroupMember member) {
+        append(ADD_MEMBER, (out, codec) -> codec.writeMember(out, member));
+    }
+
+    public void logResourceAdded(Resource resource) {
+        append(ADD_RESOURCE, (out, codec) -> codec.writeResource(out, resource));
+    }
+
+    public void logRevisionCompleted(RevisionPlan plan) {
+        append(REVISION_COMPLETE, (out, codec) -> codec.writeRevisionPlan(out, plan));
+    }
+
+    public void logTaskStatus(StudyTask task) {
+        append(TASK_STATUS, (out, codec) -> {
+            out.writeInt(task.getId());
+            out.writeByte(task.getStatus().ordinal());
+        });
+    }
+
+    public void logSessionStatus(Session session) {
+        append(SESSION_STATUS, (out, codec) -> {
+            out.writeInt(session.getId());
+            out.writeByte(session.getStatus().ordinal());
+        });
+    }
+
+    public void logSessionTimes(Session session) {
+        append(SESSION_TIMES, (out, codec) -> {
+            out.writeInt(session.getId());
+            PlannerRecordCodec.writeDateTime(out, session.getStartTime());
+            PlannerRecordCodec.writeDateTime(out, session.getEndTime());
+        });
+    }
+
+    public void logTaskText(StudyTask task) {
+        append(TASK_TEXT, (out, codec) -> {
+            out.writeInt(task.getId());
+            codec.writeString(out, task.getTitle());
+            codec.writeString(out, task.getDescription());
+            out.writeInt(task.getTags().size());
+            for (String tag : task.getTags()) {
+                codec.writeString(out, tag);
+            }
+        });
+    }
+
+    public void logTaskRemoved(int taskId) {
+        append(REMOVE_TASK, (out, codec) -> out.writeInt(taskId));
+    }
+
+    public void logSessionRemoved(int sessionId) {
+        append(REMOVE_SESSION, (out, codec) -> out.writeInt(sessionId));
+    }
+
+    // For changes with no record of their own (estimates, assignee, dependencies, location,
+    // resources and the like): the whole entity is written again.
+    public void logTaskReplaced(StudyTask task) {
+        append(TASK_REPLACED, (out, codec) -> codec.writeTask(out, task));
+    }
+
+    public void logSessionReplaced(Session session) {
+        append(SESSION_REPLACED, (out, codec) -> codec.writeSession(out, session));
+    }
+
+    // Encodes on the caller's thread and returns once the record is queued; durability
+    // follows within the commit interval, or immediately after sync().
+    public long append(byte op, RecordBody body) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0);
+            out.writeByte(op);
+            out.writeLong(0);
+            body.write(out, ENCODER);
+            out.writeInt(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] record = bytes.toByteArray();
+        ByteBuffer view = ByteBuffer.wrap(record);
+        int length = record.length - 8;
+        view.putInt(0, length);
+        synchronized (lock) {
+            if (failure != null) {
+                throw new UncheckedIOException("Journal is unusable", failure);
+            }
+            if (closed) {
+                throw new IllegalStateException("Journal is closed");
+            }
+            long sequence = ++lastSequence;
+            view.putLong(5, sequence);
+            CRC32 crc = new CRC32();
+            crc.update(record, 4, length);
+            view.putInt(4 + length, (int) crc.getValue());
+            pending.write(record, 0, record.length);
+            pendingSequence = sequence;
+            recordsSinceCheckpoint++;
+            if (pending.size() >= MAX_BATCH_BYTES) {
+                lock.notifyAll();
+            }
+            return sequence;
+        }
+    }
+
+    // Blocks until every record appended so far is on disk.
+    public void sync() throws IOException {
+        synchronized (lock) {
+            long target = lastSequence;
+            syncRequested = true;
+            lock.notifyAll();
+            while (durableSequence < target && failure == null) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while syncing journal");
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    public boolean needsCheckpoint() {
+        synchronized (lock) {
+            return checkpointEvery > 0 && recordsSinceCheckpoint >= checkpointEvery;
+        }
+    }
+
+    // Every appended record must already be applied to the state, and the state must not
+    // change while this runs; the caller provides that exclusion.
+    public void checkpoint(PlannerState state) throws IOException {
+        long sequence;
+        synchronized (ioLock) {
+            byte[] batch;
+            synchronized (lock) {
+                batch = pending.toByteArray();
+                pending = new ByteArrayOutputStream();
+                sequence = lastSequence;
+            }
+            writeBatch(batch);
+            PlannerSnapshot.write(directory.resolve(SNAPSHOT_FILE), state, sequence);
+            channel.truncate(0);
+            channel.position(0);
+            channel.force(true);
+            synchronized (lock) {
+                durableSequence = Math.max(durableSequence, sequence);
+                recordsSinceCheckpoint = (int) (lastSequence - sequence);
+                lock.notifyAll();
+            }
+        }
+        Logger.getInstance().log("Journal checkpoint written at sequence " + sequence);
+    }
+
+    private void writeBatch(byte[] batch) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(batch);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+
+    private void writeLoop() {
+        while (true) {
+            byte[] batch;
+            long batchSequence;
+            synchronized (lock) {
+                try {
+                    while (pending.size() == 0 && !closed) {
+                        lock.wait();
+                    }
+                    // Give concurrent writers one commit interval to join this batch.
+                    long deadline = System.currentTimeMillis() + commitIntervalMillis;
+                    while (!closed && !syncRequested && pending.size() < MAX_BATCH_BYTES) {
+                        long remaining = deadline - System.currentTimeMillis();
+                        if (remaining <= 0) {
+                            break;
+                        }
+                        lock.wait(remaining);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (pending.size() == 0 && closed) {
+                    return;
+                }
+                batch = pending.toByteArray();
+                batchSequence = pendingSequence;
+                pending = new ByteArrayOutputStream();
+                syncRequested = false;
+            }
+            try {
+                synchronized (ioLock) {
+                    writeBatch(batch);
+                }
+                synchronized (lock) {
+                    durableSequence = Math.max(durableSequence, batchSequence);
+                    lock.notifyAll();
+                }
+            } catch (IOException e) {
+                synchronized (lock) {
+                    failure = e;
+                    lock.notifyAll();
+                }
+                Logger.getInstance().log("Journal write failed: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // Strings are written inline as a length-prefixed UTF-8 run (-1 for null).
+    static class InlineStrings implements PlannerRecordCodec.StringSink, PlannerRecordCodec.StringSource {
+        @Override
+        public void writeString(DataOutput out, String value) throws IOException {
+            if (value == null) {
+                out.writeInt(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        @Override
+        public String readString(ByteBuffer in) {
+            int length = in.getInt();
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.studyplanner.models;
+
+import java.io.IOException;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.studyplanner.models.*;
+
+// ===================== PLANNER SHARD =====================
+// One top-level group's planner, driven by a single-writer mailbox thread: every message
+// runs on that thread in arrival order, so a shard never contends with itself and shards
+// never contend with each other.
+class PlannerShard implements AutoCloseable {
+    private final CompositeGroup group;
+    private final PlannerManager planner;
+    private final ExecutorService mailbox;
+
+    PlannerShard(CompositeGroup group) {
+        this.group = group;
+        this.planner = new PlannerManager(group);
+        this.mailbox = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "planner-shard-" + group.getName());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public <T> CompletableFuture<T> ask(Function<PlannerManager, T> message) {
+        return CompletableFuture.supplyAsync(() -> message.apply(planner), mailbox);
+    }
+
+    public CompletableFuture<Void> tell(Consumer<PlannerManager> message) {
+        return CompletableFuture.runAsync(() -> message.accept(planner), mailbox);
+    }
+
+    public CompositeGroup getGroup() { return group; }
+    public String getName() { return group.getName(); }
+
+    // Lets queued messages finish, then stops the mailbox and shuts the planner down. Messages
+    // still queued after the grace period are dropped.
+    @Override
+    public void close() {
+        mailbox.shutdown();
+        try {
+            if (!mailbox.awaitTermination(30, TimeUnit.SECONDS)) {
+                List<Runnable> dropped = mailbox.shutdownNow();
+                Logger.getInstance().log(LogLevel.WARN, "Shard " + getName() + " closed with " + dropped.size() + " message(s) pending");
+            }
+        } catch (InterruptedException e) {
+            mailbox.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        try {
+            planner.shutdown();
+        } catch (IOException e) {
+            Logger.getInstance().log(LogLevel.WARN, "Shard " + getName() + " did not shut down cleanly: " + e.getMessage());
+        }
+    }
+}
+
+// ===================== SHARDED PLANNER =====================
+// Multi-tenant planner: each top-level group gets its own shard, so groups plan in parallel
+// and scale with cores instead of queueing on one planner. Writes go to the owning shard's
+// mailbox. Cross-group queries are scattered to every shard and gathered.
+//
+// Resources such as classrooms are shared between groups and kept here rather than in any
+// shard. A booking locks its resources (in id order) while the shard admits it, so two
+// groups can never both pass the conflict check for the same slot.
+class ShardedPlanner implements AutoCloseable {
+    private final Map<String, PlannerShard> shards = new ConcurrentHashMap<>();
+    private final Map<Integer, Resource> resources = new ConcurrentHashMap<>();
+
+    public synchronized PlannerShard addGroup(CompositeGroup group) {
+        if (shards.containsKey(group.getName())) {
+            throw new IllegalArgumentException("Group already has a shard: " + group.getName());
+        }
+        PlannerShard shard = new PlannerShard(group);
+        shards.put(group.getName(), shard);
+        return shard;
+    }
+
+    public PlannerShard getShard(String groupName) {
+        PlannerShard shard = shards.get(groupName);
+        if (shard == null) {
+            throw new IllegalArgumentException("Unknown group: " + groupName);
+        }
+        return shard;
+    }
+
+    public Collection<PlannerShard> getShards() {
+        return Collections.unmodifiableCollection(shards.values());
+    }
+
+    public void addResource(Resource resource) {
+        resources.put(resource.getId(), resource);
+    }
+
+    public Collection<Resource> getResources() {
+        return Collections.unmodifiableCollection(resources.values());
+    }
+
+    public CompletableFuture<Void> addTask(String groupName, StudyTask task) {
+        return getShard(groupName).tell(planner -> planner.addTask(task));
+    }
+
+    public CompletableFuture<BatchResult<StudyTask>> addTasks(String groupName, Collection<? extends StudyTask> tasks) {
+        List<StudyTask> batch = new ArrayList<>(tasks);
+        return getShard(groupName).ask(planner -> planner.addTasks(batch));
+    }
+
+    public CompletableFuture<Boolean> addSession(String groupName, Session session) {
+        List<Resource> booked = new ArrayList<>(session.getResources());
+        booked.sort(Comparator.comparingInt(Resource::getId));
+        return getShard(groupName).ask(planner -> withLocked(booked, 0, () -> planner.addSession(session)));
+    }
+
+    // Runs the action holding every resource's monitor; always taken in id order.
+    private static <T> T withLocked(List<Resource> locked, int next, Supplier<T> action) {
+        if (next == locked.size()) {
+            return action.get();
+        }
+        synchronized (locked.get(next)) {
+            return withLocked(locked, next + 1, action);
+        }
+    }
+
+    // Runs the query on every shard at once and collects the answers by group name.
+    public <T> CompletableFuture<Map<String, T>> scatter(Function<PlannerManager, T> query) {
+        Map<String, CompletableFuture<T>> pending = new LinkedHashMap<>();
+        for (PlannerShard shard : shards.values()) {
+            pending.put(shard.getName(), shard.ask(query));
+        }
+        return CompletableFuture.allOf(pending.values().toArray(new CompletableFuture<?>[0]))
+            .thenApply(done -> {
+                Map<String, T> results = new LinkedHashMap<>();
+                pending.forEach((name, future) -> results.put(name, future.join()));
+                return results;
+            });
+    }
+
+    // Double bookings of shared resources across all groups. Each shard reports its own
+    // bookings; the gathered bookings are swept per resource.
+    public CompletableFuture<List<SessionConflict>> findResourceConflicts() {
+        return scatter(ShardedPlanner::sharedBookings).thenApply(perShard -> {
+            Map<Resource, List<Session>> bookings = new LinkedHashMap<>();
+            for (Map<Resource, List<Session>> shardBookings : perShard.values()) {
+                shardBookings.forEach((resource, sessions) ->
+                    bookings.computeIfAbsent(resource, r -> new ArrayList<>()).addAll(sessions));
+            }
+            List<SessionConflict> conflicts = new ArrayList<>();
+            bookings.forEach((resource, sessions) -> SessionIntervalIndex
+                .sweep(sessions, ConflictType.RESOURCE_DOUBLE_BOOKING, resource).forEachRemaining(conflicts::add));
+            return conflicts;
+        });
+    }
+
+    private static Map<Resource, List<Session>> sharedBookings(PlannerManager planner) {
+        Map<Resource, List<Session>> bookings = new HashMap<>();
+        for (Session session : planner.getSessions()) {
+            for (Resource resource : session.getResources()) {
+                bookings.computeIfAbsent(resource, r -> new ArrayList<>()).add(session);
+            }
+        }
+        return bookings;
+    }
+
+    // Every group's own conflicts, prefixed with the group name, then cross-group ones.
+    public CompletableFuture<List<String>> detectConflicts() {
+        CompletableFuture<Map<String, List<String>>> perGroup = scatter(PlannerManager::detectConflicts);
+        return perGroup.thenCombine(findResourceConflicts(), (groups, shared) -> {
+            List<String> conflicts = new ArrayList<>();
+            groups.forEach((name, messages) -> messages.forEach(message -> conflicts.add(name + ": " + message)));
+            for (SessionConflict conflict : shared) {
+                conflicts.add("Shared: " + conflict.getMessage());
+            }
+            return conflicts;
+        });
+    }
+
+    public CompletableFuture<List<StudyTask>> searchTasks(String query) {
+        return scatter(planner -> planner.searchTasks(query)).thenApply(perGroup -> {
+            List<StudyTask> results = new ArrayList<>();
+            perGroup.values().forEach(results::addAll);
+            return results;
+        });
+    }
+
+    public CompletableFuture<List<Session>> getSessionsBetween(LocalDateTime from, LocalDateTime to) {
+        return scatter(planner -> planner.getSessionsBetween(from, to)).thenApply(perGroup -> {
+            List<Session> results = new ArrayList<>();
+            perGroup.values().forEach(results::addAll);
+            results.sort(Comparator.comparing(Session::getStartTime).thenComparingInt(Session::getId));
+            return results;
+        });
+    }
+
+    public CompletableFuture<Map<String, Map<String, Object>>> getProgressReports() {
+        return scatter(PlannerManager::getProgressReport);
+    }
+
+    @Override
+    public void close() {
+        for (PlannerShard shard : shards.values()) {
+            shard.close();
+        }
+        shards.clear();
+    }
+}
@@ -1,11 +1,27 @@
 package com.studyplanner.models;
 
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
 import java.util.stream.Collectors;
 import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
 
 import com.studyplanner.models.*;
 
@@ -65,6 +81,12 @@ class SessionDecorator extends Session {
     public String exportToJSON() {
         return decoratedSession.exportToJSON();
     }
+    
+    // Decorators customise the String form, so the streaming form goes through it.
+    @Override
+    public void writeJSON(Appendable out) throws IOException {
+        out.append(exportToJSON());
+    }
 }
 
 class UrgentSessionDecorator extends SessionDecorator {
@@ -93,6 +115,22 @@ abstract class ValidationChain {
     }
     
     public abstract boolean validate(Object data);
+    
+    // Runs the same checks as validate but returns the failures instead of printing them.
+    // Validators hold no per-call state, so one chain can check many items in parallel.
+    public List<String> check(Object data) {
+        List<String> errors = errorsFor(data);
+        if (nextValidator != null) {
+            List<String> more = nextValidator.check(data);
+            if (!more.isEmpty()) {
+                errors = new ArrayList<>(errors);
+                errors.addAll(more);
+            }
+        }
+        return errors;
+    }
+    
+    protected abstract List<String> errorsFor(Object data);
 }
 
 class TaskValidationChain extends ValidationChain {
@@ -110,6 +148,14 @@ class TaskValidationChain extends ValidationChain {
         }
         return true;
     }
+    
+    @Override
+    protected List<String> errorsFor(Object data) {
+        if (data instanceof StudyTask && !((StudyTask) data).validate()) {
+            return ((StudyTask) data).getValidationErrors();
+        }
+        return Collections.emptyList();
+    }
 }
 
 class SessionValidationChain extends ValidationChain {
@@ -127,20 +173,100 @@ class SessionValidationChain extends ValidationChain {
         }
         return true;
     }
+    
+    @Override
+    protected List<String> errorsFor(Object data) {
+        if (data instanceof Session && !((Session) data).validate()) {
+            return ((Session) data).getValidationErrors();
+        }
+        return Collections.emptyList();
+    }
+}
+
+// Why one item of a batch was turned away: its position in the batch, its id and the reasons.
+class ValidationError {
+    private final int index;
+    private final int entityId;
+    private final List<String> messages;
+    
+    public ValidationError(int index, int entityId, List<String> messages) {
+        this.index = index;
+        this.entityId = entityId;
+        this.messages = messages;
+    }
+    
+    public int getIndex() { return index; }
+    public int getEntityId() { return entityId; }
+    public List<String> getMessages() { return messages; }
+    
+    @Override
+    public String toString() {
+        return "Item " + index + " (ID " + entityId + "): " + String.join("; ", messages);
+    }
+}
+
+class BatchResult<T> {
+    private final List<T> accepted = new ArrayList<>();
+    private final List<ValidationError> errors = new ArrayList<>();
+    
+    void accept(T item) { accepted.add(item); }
+    void reject(ValidationError error) { errors.add(error); }
+    
+    public List<T> getAccepted() { return accepted; }
+    public List<ValidationError> getErrors() { return errors; }
+    public boolean hasErrors() { return !errors.isEmpty(); }
+    
+    @Override
+    public String toString() {
+        return accepted.size() + " accepted, " + errors.size() + " rejected";
+    }
 }
 
 // ===================== TEMPLATE METHOD PATTERN =====================
 abstract class PlanExporter {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
     public final String export(List<? extends Exportable> items, String format) {
-        StringBuilder result = new StringBuilder();
-        result.append(getHeader(format));
-        for (Exportable item : items) {
-            result.append(formatItem(item, format));
-            result.append(getItemSeparator(format));
+        StringWriter result = new StringWriter();
+        try {
+            export(items, format, result);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        result.append(getFooter(format));
         return result.toString();
     }
+    
+    // Streams one item at a time; the separator goes between items so JSON stays valid.
+    public final void export(Iterable<? extends Exportable> items, String format, Writer out) throws IOException {
+        out.write(getHeader(format));
+        boolean first = true;
+        for (Exportable item : items) {
+            if (!first) {
+                out.write(getItemSeparator(format));
+            }
+            writeItem(item, format, out);
+            first = false;
+        }
+        out.write(getFooter(format));
+        out.flush();
+    }
+    
+    // The channel is left open for the caller; gzip output is finished but not closed.
+    public final void export(Iterable<? extends Exportable> items, String format, WritableByteChannel channel, boolean gzip) throws IOException {
+        OutputStream stream = Channels.newOutputStream(channel);
+        GZIPOutputStream gzipStream = gzip ? new GZIPOutputStream(stream, BUFFER_SIZE) : null;
+        Writer writer = new BufferedWriter(
+            new OutputStreamWriter(gzip ? gzipStream : stream, StandardCharsets.UTF_8), BUFFER_SIZE);
+        export(items, format, writer);
+        if (gzipStream != null) {
+            gzipStream.finish();
+        }
+    }
+    
+    protected void writeItem(Exportable item, String format, Writer out) throws IOException {
+        out.write(formatItem(item, format));
+    }
+    
     protected abstract String getHeader(String format);
     protected abstract String formatItem(Exportable item, String format);
     protected abstract String getItemSeparator(String format);
@@ -151,7 +277,7 @@ class StudyPlanExporter extends PlanExporter {
     @Override
     protected String getHeader(String format) {
         if ("CSV".equalsIgnoreCase(format)) {
-            return "ID,Title,Description,Difficulty,EstimatedHours,Status,CreatedDate,Tags\n";
+            return "ID,Title,Description,Difficulty,EstimatedHours,Status,CreatedDate,Tags,Type,Subject,DueDate\n";
         } else if ("JSON".equalsIgnoreCase(format)) {
             return "{\n  \"tasks\": [\n";
         }
@@ -167,6 +293,17 @@ class StudyPlanExporter extends PlanExporter {
         return item.toString();
     }
     @Override
+    protected void writeItem(Exportable item, String format, Writer out) throws IOException {
+        if ("CSV".equalsIgnoreCase(format)) {
+            item.writeCSV(out);
+        } else if ("JSON".equalsIgnoreCase(format)) {
+            out.write("    ");
+            item.writeJSON(out);
+        } else {
+            out.write(item.toString());
+        }
+    }
+    @Override
     protected String getItemSeparator(String format) {
         if ("CSV".equalsIgnoreCase(format)) {
             return "\n";
@@ -184,112 +321,777 @@ class StudyPlanExporter extends PlanExporter {
     }
 }
 
+// Same row and element layout, with the session header and a "sessions" array.
+class SessionPlanExporter extends StudyPlanExporter {
+    @Override
+    protected String getHeader(String format) {
+        if ("CSV".equalsIgnoreCase(format)) {
+            return "ID,TaskID,StartTime,EndTime,Location,Recurrence,Status\n";
+        } else if ("JSON".equalsIgnoreCase(format)) {
+            return "{\n  \"sessions\": [\n";
+        }
+        return "";
+    }
+}
+
+// One entry of a delta export: how a record changed, and the record itself unless deleted.
+class EntityChange implements Exportable {
+    private final ChangeKind kind;
+    private final String type;
+    private final int id;
+    private final long version;
+    private final Exportable record;
+    
+    public EntityChange(ChangeKind kind, String type, int id, long version, Exportable record) {
+        this.kind = kind;
+        this.type = type;
+        this.id = id;
+        this.version = version;
+        this.record = record;
+    }
+    
+    public ChangeKind getKind() { return kind; }
+    public String getType() { return type; }
+    public int getId() { return id; }
+    public long getVersion() { return version; }
+    public Exportable getRecord() { return record; }
+    
+    @Override
+    public String exportToCSV() {
+        return ExportUtils.render(this::writeCSV);
+    }
+    
+    @Override
+    public String exportToJSON() {
+        return ExportUtils.render(this::writeJSON);
+    }
+    
+    // The record's own CSV row goes in the last column as one quoted field.
+    @Override
+    public void writeCSV(Appendable out) throws IOException {
+        out.append(kind.name()).append(',').append(type).append(',').append(Integer.toString(id))
+            .append(',').append(Long.toString(version)).append(',');
+        if (record != null) {
+            ExportUtils.appendQuotedCsv(out, record.exportToCSV());
+        }
+    }
+    
+    @Override
+    public void writeJSON(Appendable out) throws IOException {
+        out.append("{\"change\":\"").append(kind.name()).append("\",\"type\":\"").append(type)
+            .append("\",\"id\":").append(Integer.toString(id)).append(",\"version\":").append(Long.toString(version));
+        if (record != null) {
+            out.append(",\"record\":");
+            record.writeJSON(out);
+        }
+        out.append('}');
+    }
+}
+
+// Delta export: the versions it covers, then one EntityChange per changed record. A reset
+// export lists every current record, and the reader should drop whatever it had before.
+class ChangeSetExporter extends StudyPlanExporter {
+    private final long since;
+    private final long watermark;
+    private final boolean reset;
+    
+    public ChangeSetExporter(long since, long watermark, boolean reset) {
+        this.since = since;
+        this.watermark = watermark;
+        this.reset = reset;
+    }
+    
+    @Override
+    protected String getHeader(String format) {
+        if ("CSV".equalsIgnoreCase(format)) {
+            return "Change,Type,ID,Version,Record\n" + (reset ? "RESET" : "WATERMARK") + ",,," + watermark + ",\n";
+        } else if ("JSON".equalsIgnoreCase(format)) {
+            return "{\n  \"since\": " + since + ",\n  \"watermark\": " + watermark + ",\n  \"reset\": " + reset
+                + ",\n  \"changes\": [\n";
+        }
+        return "";
+    }
+}
+
+// ===================== STRATEGY PATTERN =====================
+class ReportConflictPolicy implements ConflictPolicy {
+    @Override
+    public boolean accept(Session session, List<SessionConflict> conflicts) {
+        for (SessionConflict conflict : conflicts) {
+            Logger.getInstance().log("Conflict on insert: " + conflict.getMessage());
+        }
+        return true;
+    }
+}
+
+class RejectConflictPolicy implements ConflictPolicy {
+    @Override
+    public boolean accept(Session session, List<SessionConflict> conflicts) {
+        if (!conflicts.isEmpty()) {
+            Logger.getInstance().log("Session for task ID " + session.getTaskId() + " rejected: "
+                + conflicts.size() + " conflict(s), first: " + conflicts.get(0).getMessage());
+            return false;
+        }
+        return true;
+    }
+}
+
+// ===================== OBSERVER PATTERN =====================
+// Publishing only enqueues, so writers never wait on observers. A dispatcher thread drains
+// bursts from a bounded queue and hands each observer one batch holding just the topics it
+// subscribed to. When the queue is full, events are counted per topic instead of queued and
+// delivered as a single summary line.
+class PlannerEventBus implements Subject {
+    private static final int CAPACITY = 4096;
+    private static final int MAX_BATCH = 512;
+    private static final long COALESCE_MILLIS = 5;
+    
+    private static final class Event {
+        final EventTopic topic;
+        final String message;
+        
+        Event(EventTopic topic, String message) {
+            this.topic = topic;
+            this.message = message;
+        }
+    }
+    
+    private static final class Subscription {
+        final Observer observer;
+        final Set<EventTopic> topics;
+        
+        Subscription(Observer observer, Set<EventTopic> topics) {
+            this.observer = observer;
+            this.topics = topics;
+        }
+    }
+    
+    private final BlockingQueue<Event> queue = new ArrayBlockingQueue<>(CAPACITY);
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final AtomicLongArray overflow = new AtomicLongArray(EventTopic.values().length);
+    private final AtomicLong published = new AtomicLong();
+    private final Object deliveredLock = new Object();
+    private long delivered;
+    private final Thread dispatcher;
+    
+    public PlannerEventBus() {
+        dispatcher = new Thread(this::dispatchLoop, "planner-events");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+    
+    // Stops the dispatcher; events still queued are not delivered.
+    public void close() {
+        dispatcher.interrupt();
+    }
+    
+    @Override
+    public void addObserver(Observer observer) {
+        subscriptions.add(new Subscription(observer, EnumSet.allOf(EventTopic.class)));
+    }
+    
+    public void addObserver(Observer observer, EventTopic first, EventTopic... rest) {
+        subscriptions.add(new Subscription(observer, EnumSet.of(first, rest)));
+    }
+    
+    @Override
+    public void removeObserver(Observer observer) {
+        subscriptions.removeIf(subscription -> subscription.observer == observer);
+    }
+    
+    @Override
+    public void notifyObservers(String message) {
+        publish(EventTopic.SYSTEM, message);
+    }
+    
+    public void publish(EventTopic topic, String message) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        published.incrementAndGet();
+        if (!queue.offer(new Event(topic, message))) {
+            overflow.incrementAndGet(topic.ordinal());
+        }
+    }
+    
+    // Blocks until everything published so far has been handed to the observers. Fails
+    // rather than waiting forever once the dispatcher has stopped (see close).
+    public void flush() throws InterruptedException {
+        long target = published.get();
+        synchronized (deliveredLock) {
+            while (delivered < target) {
+                if (!dispatcher.isAlive()) {
+                    throw new IllegalStateException("Event dispatcher is not running");
+                }
+                deliveredLock.wait(100);
+            }
+        }
+    }
+    
+    private void dispatchLoop() {
+        List<Event> batch = new ArrayList<>();
+        long[] dropped = new long[overflow.length()];
+        while (true) {
+            try {
+                Event first = queue.poll(1, TimeUnit.SECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    Thread.sleep(COALESCE_MILLIS);
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, MAX_BATCH - batch.size());
+            long droppedTotal = 0;
+            for (int i = 0; i < dropped.length; i++) {
+                dropped[i] = overflow.getAndSet(i, 0);
+                droppedTotal += dropped[i];
+            }
+            if (batch.isEmpty() && droppedTotal == 0) {
+                continue;
+            }
+            dispatch(batch, dropped);
+            synchronized (deliveredLock) {
+                delivered += batch.size() + droppedTotal;
+                deliveredLock.notifyAll();
+            }
+            batch.clear();
+        }
+    }
+    
+    private void dispatch(List<Event> batch, long[] dropped) {
+        for (Subscription subscription : subscriptions) {
+            List<String> messages = new ArrayList<>();
+            for (Event event : batch) {
+                if (subscription.topics.contains(event.topic)) {
+                    messages.add(event.message);
+                }
+            }
+            for (EventTopic topic : subscription.topics) {
+                if (dropped[topic.ordinal()] > 0) {
+                    messages.add(dropped[topic.ordinal()] + " more " + topic + " events");
+                }
+            }
+            if (messages.isEmpty()) {
+                continue;
+            }
+            // Anything an observer throws, errors included, stays with that delivery so the
+            // dispatcher thread survives it.
+            try {
+                subscription.observer.updateAll(messages);
+            } catch (Throwable e) {
+                Logger.getInstance().log(LogLevel.ERROR, "Observer failed: " + e);
+            }
+        }
+    }
+}
+
 // ===================== ANALYTICS ENGINE =====================
 class AnalyticsEngine {
+    private static final DateTimeFormatter HEATMAP_DATE = DateTimeFormatter.ofPattern("MMM dd");
+    
     public Map<String, Object> generateProgressReport(List<StudyTask> tasks, List<Session> sessions) {
+        return generateProgressReport(ProgressCounters.of(tasks, sessions));
+    }
+    
+    public Map<String, Object> generateProgressReport(ProgressCounters counters) {
+        ProgressCounters snapshot = counters.snapshot();
         Map<String, Object> report = new HashMap<>();
-        long completedTasks = tasks.stream().filter(t -> t.getStatus() == TaskStatus.DONE).count();
-        long totalTasks = tasks.size();
+        long completedTasks = snapshot.getCompletedTasks();
+        long totalTasks = snapshot.getTotalTasks();
         double completionRate = totalTasks > 0 ? (double) completedTasks / totalTasks * 100 : 0;
         report.put("totalTasks", totalTasks);
         report.put("completedTasks", completedTasks);
         report.put("completionRate", String.format("%.1f%%", completionRate));
 
-        Map<Difficulty, Long> difficultyCount = tasks.stream()
-            .collect(Collectors.groupingBy(StudyTask::getDifficulty, Collectors.counting()));
+        Map<Difficulty, Long> difficultyCount = new EnumMap<>(Difficulty.class);
+        for (Difficulty difficulty : Difficulty.values()) {
+            long count = snapshot.getTaskCount(difficulty);
+            if (count > 0) {
+                difficultyCount.put(difficulty, count);
+            }
+        }
         report.put("difficultyBreakdown", difficultyCount);
 
-        double totalEstimatedHours = tasks.stream().mapToDouble(StudyTask::getEstimatedHours).sum();
-        double completedHours = tasks.stream()
-            .filter(t -> t.getStatus() == TaskStatus.DONE)
-            .mapToDouble(StudyTask::getEstimatedHours)
-            .sum();
-        report.put("totalEstimatedHours", StringUtils.formatHours(totalEstimatedHours));
-        report.put("completedHours", StringUtils.formatHours(completedHours));
-
-        long completedSessions = sessions.stream().filter(s -> s.getStatus() == SessionStatus.COMPLETED).count();
-        report.put("totalSessions", sessions.size());
-        report.put("completedSessions", completedSessions);
+        report.put("totalEstimatedHours", StringUtils.formatHours(snapshot.getTotalEstimatedHours()));
+        report.put("completedHours", StringUtils.formatHours(snapshot.getCompletedHours()));
+
+        report.put("totalSessions", (int) snapshot.getTotalSessions());
+        report.put("completedSessions", snapshot.getCompletedSessions());
         return report;
     }
     
     public String generateProductivityHeatmap(List<Session> sessions) {
+        DayHistogram histogram = new DayHistogram();
+        LocalDate today = LocalDate.now();
+        LocalDateTime from = today.minusDays(6).atStartOfDay();
+        LocalDateTime to = today.plusDays(1).atStartOfDay();
+        for (Session session : sessions) {
+            long minutes = Duration.between(session.getStartTime(), session.getEndTime()).toMinutes();
+            if (!session.isRecurring()) {
+                histogram.add(session.getStartTime().toLocalDate(), 1, minutes);
+                continue;
+            }
+            for (LocalDateTime occurrence : session.getOccurrences(from, to)) {
+                if (!occurrence.isBefore(from)) {
+                    histogram.add(occurrence.toLocalDate(), 1, minutes);
+                }
+            }
+        }
+        return generateProductivityHeatmap(histogram, today.minusDays(6), today, "Last 7 Days");
+    }
+    
+    // One line per day from..to; cost depends only on the length of the range.
+    public String generateProductivityHeatmap(DayHistogram histogram, LocalDate from, LocalDate to, String title) {
         StringBuilder heatmap = new StringBuilder();
-        heatmap.append("\nPRODUCTIVITY HEATMAP (Last 7 Days)\n");
+        heatmap.append("\nPRODUCTIVITY HEATMAP (").append(title).append(")\n");
         heatmap.append("=".repeat(50)).append("\n");
-        LocalDate today = LocalDate.now();
-        for (int i = 6; i >= 0; i--) {
-            LocalDate date = today.minusDays(i);
-            long sessionCount = sessions.stream()
-                .filter(s -> s.getStartTime().toLocalDate().equals(date))
-                .count();
-            String dateStr = date.format(DateTimeFormatter.ofPattern("MMM dd"));
-            String bar = "█".repeat((int) Math.min(sessionCount, 10));
-            String spaces = " ".repeat(Math.max(0, 10 - (int) sessionCount));
-            heatmap.append(String.format("%s |%s%s| %d sessions\n", dateStr, bar, spaces, sessionCount));
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            int sessionCount = histogram.getSessions(date);
+            String dateStr = date.format(HEATMAP_DATE);
+            String bar = "█".repeat(Math.min(sessionCount, 10));
+            String spaces = " ".repeat(Math.max(0, 10 - sessionCount));
+            heatmap.append(String.format("%s |%s%s| %d sessions, %s\n", dateStr, bar, spaces, sessionCount,
+                StringUtils.formatHours(histogram.getMinutes(date) / 60.0)));
         }
         return heatmap.toString();
     }
     
-    public List<StudyTask> getRecommendedRevisions(List<StudyTask> tasks, List<RevisionPlan> revisionPlans) {
-        return tasks.stream()
-            .filter(task -> revisionPlans.stream()
-                .anyMatch(plan -> plan.getTaskId() == task.getId() && !plan.getNextRevisionDate().isAfter(LocalDate.now())))
+    public List<StudyTask> getRecommendedRevisions(RevisionSchedule schedule, IntFunction<StudyTask> taskLookup) {
+        return toTasks(schedule.getDue(LocalDate.now()), taskLookup);
+    }
+    
+    public List<StudyTask> getUpcomingRevisions(RevisionSchedule schedule, IntFunction<StudyTask> taskLookup, int days) {
+        LocalDate today = LocalDate.now();
+        return toTasks(schedule.getDueBetween(today, today.plusDays(days)), taskLookup);
+    }
+    
+    private List<StudyTask> toTasks(List<RevisionPlan> plans, IntFunction<StudyTask> taskLookup) {
+        return plans.stream()
+            .map(plan -> taskLookup.apply(plan.getTaskId()))
+            .filter(Objects::nonNull)
             .sorted((a, b) -> Integer.compare(a.getDifficulty().getLevel(), b.getDifficulty().getLevel()))
             .collect(Collectors.toList());
     }
 }
 
 // ===================== CONFLICT DETECTOR =====================
+class SessionConflict {
+    private final ConflictType type;
+    private final Session first;
+    private final Session second;
+    private final Resource resource;
+    
+    public SessionConflict(ConflictType type, Session a, Session b, Resource resource) {
+        this.type = type;
+        this.first = a.getId() <= b.getId() ? a : b;
+        this.second = a.getId() <= b.getId() ? b : a;
+        this.resource = resource;
+    }
+    
+    public String getId() {
+        return type + ":" + (resource != null ? resource.getId() + ":" : "") + first.getId() + ":" + second.getId();
+    }
+    
+    public String getMessage() {
+        if (type == ConflictType.RESOURCE_DOUBLE_BOOKING) {
+            return "Resource '" + resource.getName() + "' double-booked for sessions " + first.getId() + " and " + second.getId();
+        }
+        return "Time conflict between sessions " + first.getId() + " and " + second.getId();
+    }
+    
+    public ConflictType getType() { return type; }
+    public Session getFirst() { return first; }
+    public Session getSecond() { return second; }
+    public Resource getResource() { return resource; }
+    
+    @Override
+    public String toString() {
+        return getMessage();
+    }
+}
+
 class ConflictDetector implements ConflictResolvable {
     private List<Session> sessions;
-    private List<Resource> resources;
-    private List<GroupMember> members;
+    private SessionIntervalIndex sessionIndex;
+    private Iterable<Resource> resources;
+    private Iterable<GroupMember> members;
+    private IntFunction<Session> sessionLookup;
+    private ToIntFunction<List<SessionMove>> mover;
     
     public ConflictDetector(List<Session> sessions, List<Resource> resources, List<GroupMember> members) {
         this.sessions = sessions;
         this.resources = resources;
         this.members = members;
+        this.sessionLookup = id -> sessions.stream().filter(session -> session.getId() == id).findFirst().orElse(null);
+        this.mover = moves -> {
+            moves.forEach(SessionMove::apply);
+            return moves.size();
+        };
     }
     
-    @Override
-    public List<String> detectConflicts() {
-        List<String> conflicts = new ArrayList<>();
-        for (int i = 0; i < sessions.size(); i++) {
-            for (int j = i + 1; j < sessions.size(); j++) {
-                Session s1 = sessions.get(i);
-                Session s2 = sessions.get(j);
-                if (sessionsOverlap(s1, s2)) {
-                    conflicts.add(String.format("Time conflict between sessions %d and %d", s1.getId(), s2.getId()));
-                }
+    // Works off a live index kept in start order, so a full scan skips the sort. Sessions are
+    // looked up by id through sessionLookup, and resolved conflicts are moved through mover
+    // (the planner's applyReschedule), which returns how many moves it applied.
+    public ConflictDetector(SessionIntervalIndex sessionIndex, IntFunction<Session> sessionLookup,
+                            ToIntFunction<List<SessionMove>> mover, Iterable<Resource> resources, Iterable<GroupMember> members) {
+        this.sessionIndex = sessionIndex;
+        this.sessionLookup = sessionLookup;
+        this.mover = mover;
+        this.resources = resources;
+        this.members = members;
+    }
+    
+    public List<SessionConflict> findConflicts(Session candidate) {
+        List<SessionConflict> conflicts = new ArrayList<>();
+        for (Session other : index().getOverlapping(candidate)) {
+            conflicts.add(new SessionConflict(ConflictType.TIME_OVERLAP, other, candidate, null));
+        }
+        for (Resource resource : candidate.getResources()) {
+            for (Session other : resource.getSchedule().getOverlapping(candidate)) {
+                conflicts.add(new SessionConflict(ConflictType.RESOURCE_DOUBLE_BOOKING, other, candidate, resource));
             }
         }
-        for (Resource resource : resources) {
-            List<Session> resourceSessions = new ArrayList<>(resource.getAssignedSessions());
-            for (int i = 0; i < resourceSessions.size(); i++) {
-                for (int j = i + 1; j < resourceSessions.size(); j++) {
-                    Session s1 = resourceSessions.get(i);
-                    Session s2 = resourceSessions.get(j);
-                    if (sessionsOverlap(s1, s2)) {
-                        conflicts.add(String.format("Resource '%s' double-booked for sessions %d and %d", resource.getName(), s1.getId(), s2.getId()));
-                    }
+        return conflicts;
+    }
+    
+    private SessionIntervalIndex index() {
+        return sessionIndex != null ? sessionIndex : SessionIntervalIndex.of(sessions);
+    }
+    
+    // Lazily enumerates time overlaps first, then resource double-bookings, one resource at a time.
+    public Iterable<SessionConflict> findConflicts() {
+        return () -> new Iterator<SessionConflict>() {
+            private final Iterator<Resource> pendingResources = resources.iterator();
+            private Iterator<SessionConflict> current = sessionIndex != null
+                ? SessionIntervalIndex.sweep(sessionIndex.iterator(), ConflictType.TIME_OVERLAP, null)
+                : SessionIntervalIndex.sweep(sessions, ConflictType.TIME_OVERLAP, null);
+            
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && pendingResources.hasNext()) {
+                    Resource resource = pendingResources.next();
+                    current = SessionIntervalIndex.sweep(resource.getSchedule().iterator(),
+                        ConflictType.RESOURCE_DOUBLE_BOOKING, resource);
+                }
+                return current.hasNext();
+            }
+            
+            @Override
+            public SessionConflict next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
                 }
+                return current.next();
             }
+        };
+    }
+    
+    @Override
+    public List<String> detectConflicts() {
+        List<String> conflicts = new ArrayList<>();
+        for (SessionConflict conflict : findConflicts()) {
+            conflicts.add(conflict.getMessage());
         }
         return conflicts;
     }
     
-    private boolean sessionsOverlap(Session s1, Session s2) {
-        return s1.getStartTime().isBefore(s2.getEndTime()) && s1.getEndTime().isAfter(s2.getStartTime());
+    public List<Session> getSessionsBetween(LocalDateTime from, LocalDateTime to) {
+        return index().getSessionsBetween(from, to);
+    }
+    
+    // Moves needed to clear every time conflict, computed without changing anything.
+    public List<SessionMove> proposeReschedule() {
+        return new SessionRescheduler(index()).propose();
     }
     
+    // Moves the newer movable session of the conflict to the nearest free slot.
     @Override
     public boolean resolveConflict(String conflictId) {
         Logger.getInstance().log("Attempting to resolve conflict: " + conflictId);
+        String[] parts = conflictId.split(":");
+        if (parts.length < 3) {
+            return false;
+        }
+        int firstId;
+        int secondId;
+        try {
+            firstId = Integer.parseInt(parts[parts.length - 2]);
+            secondId = Integer.parseInt(parts[parts.length - 1]);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        Session first = sessionLookup.apply(firstId);
+        Session second = sessionLookup.apply(secondId);
+        if (first == null || second == null) {
+            return false;
+        }
+        Session moving = SessionRescheduler.isMovable(second) ? second : first;
+        if (!SessionRescheduler.isMovable(moving)) {
+            return false;
+        }
+        Duration length = Duration.between(moving.getStartTime(), moving.getEndTime());
+        if (length.isNegative() || length.isZero()) {
+            return false;
+        }
+        LocalDateTime slot = index().findNextFreeSlot(moving);
+        if (slot.equals(moving.getStartTime())) {
+            return false;
+        }
+        SessionMove move = new SessionMove(moving, slot, slot.plus(length));
+        if (mover.applyAsInt(List.of(move)) == 0) {
+            return false;
+        }
+        Logger.getInstance().log("Resolved conflict " + conflictId + ": " + move);
         return true;
     }
 }
 
+// ===================== AUTO RESCHEDULER =====================
+class SessionMove {
+    private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("MMM dd HH:mm");
+    private final Session session;
+    private final LocalDateTime fromStart;
+    private final LocalDateTime fromEnd;
+    private final LocalDateTime toStart;
+    private final LocalDateTime toEnd;
+    
+    public SessionMove(Session session, LocalDateTime toStart, LocalDateTime toEnd) {
+        this.session = session;
+        this.fromStart = session.getStartTime();
+        this.fromEnd = session.getEndTime();
+        this.toStart = toStart;
+        this.toEnd = toEnd;
+    }
+    
+    // False once the session has been moved by something else since the move was proposed.
+    public boolean isCurrent() {
+        return session.getStartTime().equals(fromStart) && session.getEndTime().equals(fromEnd);
+    }
+    
+    public void apply() {
+        session.reschedule(toStart, toEnd);
+    }
+    
+    public Session getSession() { return session; }
+    public LocalDateTime getFromStart() { return fromStart; }
+    public LocalDateTime getFromEnd() { return fromEnd; }
+    public LocalDateTime getToStart() { return toStart; }
+    public LocalDateTime getToEnd() { return toEnd; }
+    
+    @Override
+    public String toString() {
+        return "Session " + session.getId() + ": " + fromStart.format(FORMAT) + "-" + fromEnd.toLocalTime()
+            + " -> " + toStart.format(FORMAT) + "-" + toEnd.toLocalTime();
+    }
+}
+
+// Greedy interval scheduling over the single timeline ConflictDetector checks, so a slot that
+// is free there is free for every member and resource involved. Sessions that cannot move
+// (anything but a scheduled StudySession) stay put; of the rest, the largest non-overlapping
+// subset is kept by earliest-end-first, and the displaced ones leave a min-heap by original
+// start for the nearest free slot at or after it. Busy time is a map of merged blocks, so a
+// crowded stretch costs one lookup however many sessions it holds. Recurring sessions never
+// move, and only the occurrences a search actually reaches are added to the map.
+class SessionRescheduler {
+    // How far past its original start a session may be moved before it is left unresolved.
+    private static final long SEARCH_LIMIT_SECONDS = Duration.ofDays(366).getSeconds();
+    private final List<Session> sessions = new ArrayList<>();
+    private final TreeMap<Long, Long> busy = new TreeMap<>();
+    // Fixed recurring sessions; their occurrences are added to busy as searches run into them.
+    private final List<Session> recurring = new ArrayList<>();
+    private LocalTime earliest;
+    private LocalTime latest;
+    private long shortest;
+    
+    public SessionRescheduler(Iterable<Session> sessions) {
+        for (Session session : sessions) {
+            this.sessions.add(session);
+        }
+    }
+    
+    public static boolean isMovable(Session session) {
+        return session instanceof StudySession && session.getStatus() == SessionStatus.SCHEDULED
+            && !session.isRecurring();
+    }
+    
+    // Only propose slots that lie entirely within these hours of a day. Windows that wrap past
+    // midnight are not supported.
+    public void setAllowedHours(LocalTime earliest, LocalTime latest) {
+        if ((earliest == null) != (latest == null)) {
+            throw new IllegalArgumentException("Allowed hours need both a start and an end");
+        }
+        if (earliest != null && latest.isBefore(earliest)) {
+            throw new IllegalArgumentException("Allowed hours end (" + latest + ") before they start (" + earliest + ")");
+        }
+        this.earliest = earliest;
+        this.latest = latest;
+    }
+    
+    public List<SessionMove> propose() {
+        busy.clear();
+        recurring.clear();
+        List<Session> movable = new ArrayList<>();
+        for (Session session : sessions) {
+            if (isMovable(session)) {
+                movable.add(session);
+            } else {
+                hold(session);
+            }
+        }
+        movable.sort(Comparator.comparing(Session::getEndTime).thenComparingInt(Session::getId));
+        PriorityQueue<Session> displaced = new PriorityQueue<>(
+            Comparator.comparing(Session::getStartTime).thenComparingInt(Session::getId));
+        for (Session session : movable) {
+            if (overlapsBusy(start(session), end(session))) {
+                displaced.add(session);
+            } else {
+                occupy(start(session), end(session));
+            }
+        }
+        shortest = Long.MAX_VALUE;
+        for (Session session : displaced) {
+            shortest = Math.min(shortest, end(session) - start(session));
+        }
+        List<SessionMove> moves = new ArrayList<>(displaced.size());
+        while (!displaced.isEmpty()) {
+            SessionMove move = place(displaced.poll());
+            if (move != null) {
+                moves.add(move);
+            }
+        }
+        return moves;
+    }
+    
+    // Nearest slot for one session, with every other session left where it is.
+    public SessionMove propose(Session session) {
+        busy.clear();
+        recurring.clear();
+        shortest = 0;
+        if (!isMovable(session)) {
+            return null;
+        }
+        for (Session other : sessions) {
+            if (other.getId() != session.getId()) {
+                hold(other);
+            }
+        }
+        return place(session);
+    }
+    
+    private SessionMove place(Session session) {
+        long length = end(session) - start(session);
+        if (length <= 0 || (earliest != null && length > Duration.between(earliest, latest).getSeconds())) {
+            return null;
+        }
+        long slot = nextFree(start(session), length);
+        if (slot < 0) {
+            return null;
+        }
+        occupy(slot, slot + length);
+        if (slot == start(session)) {
+            return null;
+        }
+        return new SessionMove(session, DateUtils.fromEpochSecond(slot), DateUtils.fromEpochSecond(slot + length));
+    }
+    
+    // Start of the first free slot, or -1 if there is none within the search limit.
+    private long nextFree(long candidate, long length) {
+        long limit = candidate + SEARCH_LIMIT_SECONDS;
+        while (true) {
+            candidate = fitAllowedHours(candidate, length);
+            if (candidate > limit) {
+                return -1;
+            }
+            Map.Entry<Long, Long> block = busy.floorEntry(candidate);
+            if (block != null && block.getValue() > candidate) {
+                candidate = block.getValue();
+                continue;
+            }
+            Map.Entry<Long, Long> next = busy.higherEntry(candidate);
+            if (next == null || next.getKey() >= candidate + length) {
+                if (occupyRecurring(candidate, candidate + length)) {
+                    continue;
+                }
+                return candidate;
+            }
+            if (next.getKey() - candidate < shortest) {
+                // No remaining session fits here; fold the gap away so later searches skip it.
+                occupy(candidate, next.getKey());
+            }
+            candidate = next.getValue();
+        }
+    }
+    
+    private long fitAllowedHours(long candidate, long length) {
+        if (earliest == null) {
+            return candidate;
+        }
+        LocalDate day = DateUtils.fromEpochSecond(candidate).toLocalDate();
+        long open = DateUtils.toEpochSecond(day.atTime(earliest));
+        long close = DateUtils.toEpochSecond(day.atTime(latest));
+        if (candidate < open) {
+            return open;
+        }
+        if (candidate + length > close) {
+            return DateUtils.toEpochSecond(day.plusDays(1).atTime(earliest));
+        }
+        return candidate;
+    }
+    
+    private boolean overlapsBusy(long start, long end) {
+        Map.Entry<Long, Long> block = busy.lowerEntry(end);
+        return block != null && block.getValue() > start || occupyRecurring(start, end);
+    }
+    
+    private void hold(Session session) {
+        if (session.isRecurring()) {
+            recurring.add(session);
+        } else {
+            occupy(start(session), end(session));
+        }
+    }
+    
+    // Marks busy any recurring occurrence overlapping [start, end); true if there was one.
+    private boolean occupyRecurring(long start, long end) {
+        boolean found = false;
+        LocalDateTime from = DateUtils.fromEpochSecond(start);
+        LocalDateTime to = DateUtils.fromEpochSecond(end);
+        for (Session session : recurring) {
+            long length = end(session) - start(session);
+            for (LocalDateTime occurrence : session.getOccurrences(from, to)) {
+                long occurrenceStart = DateUtils.toEpochSecond(occurrence);
+                occupy(occurrenceStart, occurrenceStart + length);
+                found = true;
+            }
+        }
+        return found;
+    }
+    
+    // Adds [start, end) to the busy map, merging it with any blocks it touches.
+    private void occupy(long start, long end) {
+        Map.Entry<Long, Long> before = busy.floorEntry(start);
+        if (before != null && before.getValue() >= start) {
+            start = before.getKey();
+            end = Math.max(end, before.getValue());
+        }
+        Map.Entry<Long, Long> next;
+        while ((next = busy.ceilingEntry(start)) != null && next.getKey() <= end) {
+            end = Math.max(end, next.getValue());
+            busy.remove(next.getKey());
+        }
+        busy.put(start, end);
+    }
+    
+    private static long start(Session session) {
+        return DateUtils.toEpochSecond(session.getStartTime());
+    }
+    
+    private static long end(Session session) {
+        return DateUtils.toEpochSecond(session.getEndTime());
+    }
+}
+
 // ===================== UTILITIES =====================
 class DateUtils {
     public static boolean isOverdue(LocalDate dueDate) {
@@ -300,6 +1102,14 @@ class DateUtils {
         return Duration.between(start.atStartOfDay(), end.atStartOfDay()).toDays();
     }
     
+    public static long toEpochSecond(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+    
+    public static LocalDateTime fromEpochSecond(long epochSecond) {
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+    }
+    
     public static List<LocalDate> getDateRange(LocalDate start, LocalDate end) {
         List<LocalDate> dates = new ArrayList<>();
         LocalDate current = start;
@@ -311,11 +1121,122 @@ class DateUtils {
     }
 }
 
+class ExportUtils {
+    interface ItemWriter {
+        void writeTo(Appendable out) throws IOException;
+    }
+    
+    public static String render(ItemWriter writer) {
+        StringBuilder out = new StringBuilder();
+        try {
+            writer.writeTo(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+    
+    public static void appendQuotedCsv(Appendable out, String value) throws IOException {
+        out.append('"');
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"') {
+                    out.append('"');
+                }
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+    
+    // Quotes only when the value would otherwise break the row.
+    public static void appendCsvField(Appendable out, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                appendQuotedCsv(out, value);
+                return;
+            }
+        }
+        out.append(value);
+    }
+    
+    public static void appendJsonString(Appendable out, String value) throws IOException {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        out.append("\\u00").append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xF, 16));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+    
+    // Same digits as "%.2f" without going through Formatter (and always with a '.').
+    public static void appendFixed2(Appendable out, double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            out.append(Double.toString(value));
+            return;
+        }
+        long cents = Math.round(Math.abs(value) * 100);
+        if (value < 0 && cents != 0) {
+            out.append('-');
+        }
+        out.append(Long.toString(cents / 100)).append('.');
+        long fraction = cents % 100;
+        if (fraction < 10) {
+            out.append('0');
+        }
+        out.append(Long.toString(fraction));
+    }
+}
+
 class StringUtils {
     public static boolean matchesPattern(String text, String pattern) {
         return Pattern.compile(pattern, Pattern.CASE_INSENSITIVE).matcher(text).find();
     }
     
+    public static boolean matchesPattern(String text, Pattern pattern) {
+        return text != null && pattern.matcher(text).find();
+    }
+    
+    // Lower-cased runs of letters and digits.
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+    
     public static List<String> parseTags(String tagString) {
         if (tagString == null || tagString.trim().isEmpty()) {
             return new ArrayList<>();
@@ -334,33 +1255,206 @@ class StringUtils {
 }
 
 // ===================== SINGLETON CLASSES =====================
+// Callers only claim a slot in a fixed-size ring and publish an entry there; a background
+// drainer formats batches of entries and writes them to stdout (and optionally a file). The ring
+// doubles as the in-memory history, so memory stays bounded; entries the drainer falls behind on
+// are counted as dropped rather than blocking the caller.
 class Logger {
-    private static Logger instance;
-    private List<String> logs;
+    private static final int CAPACITY = 1024;
+    private static final int MASK = CAPACITY - 1;
+    private static final long DRAIN_INTERVAL_MILLIS = 20;
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    
+    private static class Holder {
+        static final Logger INSTANCE = new Logger();
+    }
+    
+    private static final class Entry {
+        final long sequence;
+        final long timestamp;
+        final LogLevel level;
+        final String message;
+        
+        Entry(long sequence, long timestamp, LogLevel level, String message) {
+            this.sequence = sequence;
+            this.timestamp = timestamp;
+            this.level = level;
+            this.message = message;
+        }
+    }
+    
+    // Entries are immutable and swapped in whole, so writers a full lap apart that land on
+    // the same slot cannot interleave their fields; the later sequence wins.
+    private final AtomicReferenceArray<Entry> entries = new AtomicReferenceArray<>(CAPACITY);
+    private final AtomicLong cursor = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Object drainLock = new Object();
+    private final ZoneId zone = ZoneId.systemDefault();
+    private volatile LogLevel level = LogLevel.INFO;
+    private volatile boolean consoleOutput = true;
+    private volatile long clearedBefore;
+    private Writer fileOutput;
+    private long drained;
+    private long formattedSecond = Long.MIN_VALUE;
+    private String formattedTimestamp;
     
     private Logger() {
-        this.logs = new ArrayList<>();
+        Thread drainer = new Thread(this::drainLoop, "planner-logger");
+        drainer.setDaemon(true);
+        drainer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "planner-logger-flush"));
     }
     
     public static Logger getInstance() {
-        if (instance == null) {
-            instance = new Logger();
-        }
-        return instance;
+        return Holder.INSTANCE;
     }
     
     public void log(String message) {
-        String logEntry = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")) + " - " + message;
-        logs.add(logEntry);
-        System.out.println("LOG: " + logEntry);
+        log(LogLevel.INFO, message);
+    }
+    
+    public void log(LogLevel messageLevel, String message) {
+        if (messageLevel.compareTo(level) < 0) {
+            return;
+        }
+        long sequence = cursor.getAndIncrement();
+        int slot = (int) (sequence & MASK);
+        Entry entry = new Entry(sequence, System.currentTimeMillis(), messageLevel, message);
+        while (true) {
+            Entry current = entries.get(slot);
+            if (current != null && current.sequence > sequence) {
+                return;
+            }
+            if (entries.compareAndSet(slot, current, entry)) {
+                return;
+            }
+        }
     }
     
+    public void flush() {
+        drain();
+    }
+    
+    // Most recent entries still held in the ring, oldest first.
     public List<String> getLogs() {
-        return new ArrayList<>(logs);
+        return getRecentLogs(CAPACITY);
+    }
+    
+    public List<String> getRecentLogs(int limit) {
+        long end = cursor.get();
+        long start = Math.max(Math.max(clearedBefore, end - CAPACITY), end - limit);
+        List<String> entries = new ArrayList<>((int) Math.max(0, end - start));
+        StringBuilder line = new StringBuilder();
+        for (long sequence = Math.max(0, start); sequence < end; sequence++) {
+            line.setLength(0);
+            if (readEntry(sequence, line)) {
+                entries.add(line.toString());
+            }
+        }
+        return entries;
     }
     
     public void clearLogs() {
-        logs.clear();
+        clearedBefore = cursor.get();
+    }
+    
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+    
+    public void setLevel(LogLevel level) { this.level = level; }
+    public LogLevel getLevel() { return level; }
+    public void setConsoleOutput(boolean consoleOutput) { this.consoleOutput = consoleOutput; }
+    
+    public void setFileOutput(Path file) throws IOException {
+        synchronized (drainLock) {
+            if (fileOutput != null) {
+                fileOutput.close();
+                fileOutput = null;
+            }
+            if (file != null) {
+                fileOutput = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+        }
+    }
+    
+    private void drainLoop() {
+        while (true) {
+            try {
+                Thread.sleep(DRAIN_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            drain();
+        }
+    }
+    
+    private void drain() {
+        synchronized (drainLock) {
+            long end = cursor.get();
+            if (drained >= end) {
+                return;
+            }
+            if (end - drained > CAPACITY) {
+                dropped.addAndGet(end - CAPACITY - drained);
+                drained = end - CAPACITY;
+            }
+            StringBuilder batch = new StringBuilder();
+            while (drained < end) {
+                int before = batch.length();
+                batch.append("LOG: ");
+                if (!readEntry(drained, batch)) {
+                    batch.setLength(before);
+                    Entry entry = entries.get((int) (drained & MASK));
+                    if (entry == null || entry.sequence < drained) {
+                        break;
+                    }
+                    dropped.incrementAndGet();
+                } else {
+                    batch.append(System.lineSeparator());
+                }
+                drained++;
+            }
+            if (batch.length() == 0) {
+                return;
+            }
+            if (consoleOutput) {
+                System.out.print(batch);
+                System.out.flush();
+            }
+            if (fileOutput != null) {
+                try {
+                    fileOutput.append(batch);
+                    fileOutput.flush();
+                } catch (IOException e) {
+                    System.err.println("Log file write failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+    
+    // False if the slot does not (or no longer) hold this sequence.
+    private boolean readEntry(long sequence, StringBuilder out) {
+        Entry entry = entries.get((int) (sequence & MASK));
+        if (entry == null || entry.sequence != sequence) {
+            return false;
+        }
+        out.append(formatTimestamp(entry.timestamp)).append(" - ");
+        if (entry.level != LogLevel.INFO) {
+            out.append('[').append(entry.level).append("] ");
+        }
+        out.append(entry.message);
+        return true;
+    }
+    
+    private synchronized String formatTimestamp(long epochMillis) {
+        long second = Math.floorDiv(epochMillis, 1000);
+        if (second != formattedSecond) {
+            formattedTimestamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), zone).format(TIMESTAMP);
+            formattedSecond = second;
+        }
+        return formattedTimestamp;
     }
 }
 
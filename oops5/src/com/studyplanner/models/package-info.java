@@ -4,6 +4,9 @@ import java.io.*;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.regex.Pattern;
 
@@ -34,10 +37,38 @@ enum ResourceType {
     BOOK, SLIDES, LAB, CLASSROOM, COMPUTER
 }
 
+enum LogLevel {
+    DEBUG, INFO, WARN, ERROR
+}
+
+enum EventTopic {
+    TASK, SESSION, MEMBER, REVISION, CONFLICT, SYSTEM
+}
+
+enum ConflictType {
+    TIME_OVERLAP, RESOURCE_DOUBLE_BOOKING
+}
+
+enum RecurrenceFrequency {
+    DAILY, WEEKLY
+}
+
+enum ChangeKind {
+    INSERTED, UPDATED, DELETED
+}
+
 // ===================== INTERFACES =====================
 interface Exportable {
     String exportToCSV();
     String exportToJSON();
+    
+    default void writeCSV(Appendable out) throws IOException {
+        out.append(exportToCSV());
+    }
+    
+    default void writeJSON(Appendable out) throws IOException {
+        out.append(exportToJSON());
+    }
 }
 
 interface Validatable {
@@ -54,8 +85,45 @@ interface ConflictResolvable {
     boolean resolveConflict(String conflictId);
 }
 
+interface ConflictPolicy {
+    boolean accept(Session session, List<SessionConflict> conflicts);
+}
+
+interface SessionListener {
+    void sessionRescheduled(Session session);
+    
+    default void sessionStatusChanged(Session session, SessionStatus previous) {}
+    
+    // Location, resources, recurrence or session type changed.
+    default void sessionDetailsChanged(Session session) {}
+}
+
+interface TaskListener {
+    default void taskTextChanged(StudyTask task) {}
+    
+    default void taskStatusChanged(StudyTask task, TaskStatus previous) {}
+    
+    default void taskEstimateChanged(StudyTask task, Difficulty previousDifficulty, double previousHours) {}
+    
+    default void taskDependencyAdded(StudyTask task, StudyTask dependency) {}
+    
+    // Assignee, subject, priority, due date or max score changed.
+    default void taskDetailsChanged(StudyTask task) {}
+}
+
+interface RevisionListener {
+    void revisionRescheduled(RevisionPlan plan);
+}
+
 interface Observer {
     void update(String message);
+    
+    // Receives a coalesced burst of notifications, oldest first.
+    default void updateAll(List<String> messages) {
+        for (String message : messages) {
+            update(message);
+        }
+    }
 }
 
 interface Subject {
@@ -66,7 +134,7 @@ interface Subject {
 
 // ===================== ABSTRACT CLASSES =====================
 abstract class StudyTask implements Serializable, Exportable, Validatable {
-    protected static int idCounter = 1;
+    protected static final AtomicInteger idCounter = new AtomicInteger(1);
     protected final int id;
     protected String title;
     protected String description;
@@ -77,9 +145,20 @@ abstract class StudyTask implements Serializable, Exportable, Validatable {
     protected TaskStatus status;
     protected LocalDate createdDate;
     protected Set<String> tags;
+    protected transient volatile CopyOnWriteArrayList<TaskListener> listeners;
+    // Set while the task belongs to a planner, which then keeps dependencies in topological order.
+    private transient volatile DependencyOrder dependencyOrder;
+    // Stamped by the planner's change log on every tracked change; 0 until then.
+    private transient volatile long version;
     
     public StudyTask(String title, String description, Difficulty difficulty, double estimatedHours) {
-        this.id = idCounter++;
+        this(idCounter.getAndIncrement(), title, description, difficulty, estimatedHours);
+    }
+    
+    // Restores a task under a previously assigned id (snapshots, journals).
+    protected StudyTask(int id, String title, String description, Difficulty difficulty, double estimatedHours) {
+        this.id = id;
+        idCounter.accumulateAndGet(id + 1, Math::max);
         this.title = title;
         this.description = description;
         this.difficulty = difficulty;
@@ -90,27 +169,45 @@ abstract class StudyTask implements Serializable, Exportable, Validatable {
         this.tags = new HashSet<>();
     }
     
+    // True if target is this task or one it depends on, directly or transitively.
     public boolean hasCircularDependency(StudyTask target, Set<StudyTask> visited) {
-        if (this.equals(target)) return true;
-        if (visited.contains(this)) return false;
-        
-        visited.add(this);
-        for (StudyTask dep : dependencies) {
-            if (dep.hasCircularDependency(target, visited)) {
-                return true;
+        Deque<StudyTask> pending = new ArrayDeque<>();
+        pending.push(this);
+        while (!pending.isEmpty()) {
+            StudyTask task = pending.pop();
+            if (task.equals(target)) return true;
+            if (!visited.add(task)) continue;
+            for (StudyTask dep : task.dependencies) {
+                pending.push(dep);
             }
         }
         return false;
     }
     
+    // Rejects the dependency if the dependency already (transitively) depends on this task.
     public void addDependency(StudyTask dependency) {
-        if (!hasCircularDependency(dependency, new HashSet<>())) {
-            dependencies.add(dependency);
+        DependencyOrder order = dependencyOrder;
+        boolean added;
+        if (order != null) {
+            added = order.addDependency(this, dependency);
+        } else if (!dependency.hasCircularDependency(this, new HashSet<>())) {
+            added = dependencies.add(dependency);
         } else {
             throw new IllegalArgumentException("Adding this dependency would create a circular reference!");
         }
+        if (added && listeners != null) {
+            for (TaskListener listener : listeners) {
+                listener.taskDependencyAdded(this, dependency);
+            }
+        }
     }
     
+    public long getVersion() { return version; }
+    void setVersion(long version) { this.version = version; }
+    
+    DependencyOrder getDependencyOrder() { return dependencyOrder; }
+    void setDependencyOrder(DependencyOrder order) { this.dependencyOrder = order; }
+    
     @Override
     public boolean validate() {
         return title != null && !title.trim().isEmpty() && estimatedHours > 0;
@@ -130,42 +227,131 @@ abstract class StudyTask implements Serializable, Exportable, Validatable {
     
     @Override
     public String exportToCSV() {
-        return String.format("%d,\"%s\",\"%s\",%s,%.2f,%s,%s,%s",
-            id, title, description, difficulty, estimatedHours, 
-            status, createdDate, String.join(";", tags));
+        return ExportUtils.render(this::writeCSV);
     }
     
     @Override
     public String exportToJSON() {
-        return String.format(
-            "{\"id\":%d,\"title\":\"%s\",\"description\":\"%s\",\"difficulty\":\"%s\",\"estimatedHours\":%.2f,\"status\":\"%s\",\"createdDate\":\"%s\",\"tags\":[%s]}",
-            id, title, description, difficulty, estimatedHours, status, createdDate,
-            tags.stream().map(tag -> "\"" + tag + "\"").collect(Collectors.joining(","))
-        );
+        return ExportUtils.render(this::writeJSON);
+    }
+    
+    @Override
+    public void writeCSV(Appendable out) throws IOException {
+        out.append(Integer.toString(id)).append(',');
+        ExportUtils.appendQuotedCsv(out, title);
+        out.append(',');
+        ExportUtils.appendQuotedCsv(out, description);
+        out.append(',').append(difficulty.name()).append(',');
+        ExportUtils.appendFixed2(out, estimatedHours);
+        out.append(',').append(status.name()).append(',').append(String.valueOf(createdDate)).append(',');
+        ExportUtils.appendCsvField(out, String.join(";", tags));
+        writeTypeCSV(out);
+    }
+    
+    @Override
+    public void writeJSON(Appendable out) throws IOException {
+        out.append("{\"id\":").append(Integer.toString(id)).append(",\"title\":");
+        ExportUtils.appendJsonString(out, title);
+        out.append(",\"description\":");
+        ExportUtils.appendJsonString(out, description);
+        out.append(",\"difficulty\":\"").append(difficulty.name()).append("\",\"estimatedHours\":");
+        ExportUtils.appendFixed2(out, estimatedHours);
+        out.append(",\"status\":\"").append(status.name()).append("\",\"createdDate\":\"")
+            .append(String.valueOf(createdDate)).append("\",\"tags\":[");
+        boolean first = true;
+        for (String tag : tags) {
+            if (!first) out.append(',');
+            ExportUtils.appendJsonString(out, tag);
+            first = false;
+        }
+        out.append(']');
+        writeTypeJSON(out);
+        out.append('}');
+    }
+    
+    // Type, Subject and DueDate columns; empty for tasks that are neither topics nor assignments.
+    protected void writeTypeCSV(Appendable out) throws IOException {
+        out.append(",,,");
+    }
+    
+    protected void writeTypeJSON(Appendable out) throws IOException {
     }
     
     // Getters and setters
     public int getId() { return id; }
     public String getTitle() { return title; }
-    public void setTitle(String title) { this.title = title; }
+    public void setTitle(String title) { this.title = title; fireTextChanged(); }
     public String getDescription() { return description; }
-    public void setDescription(String description) { this.description = description; }
+    public void setDescription(String description) { this.description = description; fireTextChanged(); }
     public Difficulty getDifficulty() { return difficulty; }
-    public void setDifficulty(Difficulty difficulty) { this.difficulty = difficulty; }
+    public void setDifficulty(Difficulty difficulty) {
+        Difficulty previous = this.difficulty;
+        this.difficulty = difficulty;
+        fireEstimateChanged(previous, estimatedHours);
+    }
     public double getEstimatedHours() { return estimatedHours; }
-    public void setEstimatedHours(double estimatedHours) { this.estimatedHours = estimatedHours; }
+    public void setEstimatedHours(double estimatedHours) {
+        double previous = this.estimatedHours;
+        this.estimatedHours = estimatedHours;
+        fireEstimateChanged(difficulty, previous);
+    }
     public Set<StudyTask> getDependencies() { return dependencies; }
     public GroupMember getAssignedTo() { return assignedTo; }
-    public void setAssignedTo(GroupMember assignedTo) { this.assignedTo = assignedTo; }
+    public void setAssignedTo(GroupMember assignedTo) { this.assignedTo = assignedTo; fireDetailsChanged(); }
     public TaskStatus getStatus() { return status; }
-    public void setStatus(TaskStatus status) { this.status = status; }
+    public void setStatus(TaskStatus status) {
+        TaskStatus previous = this.status;
+        this.status = status;
+        if (previous != status && listeners != null) {
+            for (TaskListener listener : listeners) {
+                listener.taskStatusChanged(this, previous);
+            }
+        }
+    }
     public LocalDate getCreatedDate() { return createdDate; }
     public Set<String> getTags() { return tags; }
-    public void addTag(String tag) { this.tags.add(tag); }
+    public void addTag(String tag) { if (this.tags.add(tag)) fireTextChanged(); }
+    
+    public synchronized void addListener(TaskListener listener) {
+        if (listeners == null) {
+            listeners = new CopyOnWriteArrayList<>();
+        }
+        listeners.addIfAbsent(listener);
+    }
+    
+    public synchronized void removeListener(TaskListener listener) {
+        if (listeners != null) {
+            listeners.remove(listener);
+        }
+    }
+    
+    protected void fireTextChanged() {
+        if (listeners != null) {
+            for (TaskListener listener : listeners) {
+                listener.taskTextChanged(this);
+            }
+        }
+    }
+    
+    protected void fireEstimateChanged(Difficulty previousDifficulty, double previousHours) {
+        if (listeners != null) {
+            for (TaskListener listener : listeners) {
+                listener.taskEstimateChanged(this, previousDifficulty, previousHours);
+            }
+        }
+    }
+    
+    protected void fireDetailsChanged() {
+        if (listeners != null) {
+            for (TaskListener listener : listeners) {
+                listener.taskDetailsChanged(this);
+            }
+        }
+    }
 }
 
 abstract class Session implements Serializable, Exportable, Validatable {
-    protected static int idCounter = 1;
+    protected static final AtomicInteger idCounter = new AtomicInteger(1);
     protected final int id;
     protected int taskId;
     protected LocalDateTime startTime;
@@ -175,9 +361,18 @@ abstract class Session implements Serializable, Exportable, Validatable {
     protected Set<GroupMember> assignedGroup;
     protected SessionStatus status;
     protected Set<Resource> resources;
+    protected transient volatile CopyOnWriteArrayList<SessionListener> listeners;
+    private transient volatile RecurrenceRule recurrenceRule;
+    // Stamped by the planner's change log on every tracked change; 0 until then.
+    private transient volatile long version;
     
     public Session(int taskId, LocalDateTime startTime, LocalDateTime endTime, String location) {
-        this.id = idCounter++;
+        this(idCounter.getAndIncrement(), taskId, startTime, endTime, location);
+    }
+    
+    protected Session(int id, int taskId, LocalDateTime startTime, LocalDateTime endTime, String location) {
+        this.id = id;
+        idCounter.accumulateAndGet(id + 1, Math::max);
         this.taskId = taskId;
         this.startTime = startTime;
         this.endTime = endTime;
@@ -189,7 +384,8 @@ abstract class Session implements Serializable, Exportable, Validatable {
     
     @Override
     public boolean validate() {
-        return startTime != null && endTime != null && startTime.isBefore(endTime);
+        return startTime != null && endTime != null && startTime.isBefore(endTime)
+            && (recurrence == null || recurrence.isBlank() || getRecurrenceRule() != null);
     }
     
     @Override
@@ -200,50 +396,520 @@ abstract class Session implements Serializable, Exportable, Validatable {
         if (startTime != null && endTime != null && !startTime.isBefore(endTime)) {
             errors.add("Start time must be before end time");
         }
+        if (recurrence != null && !recurrence.isBlank()) {
+            try {
+                RecurrenceRule.parse(recurrence);
+            } catch (IllegalArgumentException e) {
+                errors.add("Invalid recurrence: " + e.getMessage());
+            }
+        }
         return errors;
     }
     
     @Override
     public String exportToCSV() {
-        return String.format("%d,%d,\"%s\",\"%s\",\"%s\",\"%s\",%s",
-            id, taskId, startTime, endTime, location, recurrence, status);
+        return ExportUtils.render(this::writeCSV);
     }
     
     @Override
     public String exportToJSON() {
-        return String.format(
-            "{\"id\":%d,\"taskId\":%d,\"startTime\":\"%s\",\"endTime\":\"%s\",\"location\":\"%s\",\"status\":\"%s\"}",
-            id, taskId, startTime, endTime, location, status);
+        return ExportUtils.render(this::writeJSON);
+    }
+    
+    @Override
+    public void writeCSV(Appendable out) throws IOException {
+        out.append(Integer.toString(id)).append(',').append(Integer.toString(taskId)).append(',');
+        ExportUtils.appendQuotedCsv(out, String.valueOf(startTime));
+        out.append(',');
+        ExportUtils.appendQuotedCsv(out, String.valueOf(endTime));
+        out.append(',');
+        ExportUtils.appendQuotedCsv(out, location);
+        out.append(',');
+        ExportUtils.appendQuotedCsv(out, recurrence);
+        out.append(',').append(status.name());
+    }
+    
+    @Override
+    public void writeJSON(Appendable out) throws IOException {
+        out.append("{\"id\":").append(Integer.toString(id))
+            .append(",\"taskId\":").append(Integer.toString(taskId))
+            .append(",\"startTime\":\"").append(String.valueOf(startTime))
+            .append("\",\"endTime\":\"").append(String.valueOf(endTime))
+            .append("\",\"location\":");
+        ExportUtils.appendJsonString(out, location);
+        out.append(",\"recurrence\":");
+        ExportUtils.appendJsonString(out, recurrence);
+        out.append(",\"status\":\"").append(status.name()).append("\"}");
     }
     
     // Getters and setters
     public int getId() { return id; }
     public int getTaskId() { return taskId; }
+    public long getVersion() { return version; }
+    void setVersion(long version) { this.version = version; }
     public LocalDateTime getStartTime() { return startTime; }
-    public void setStartTime(LocalDateTime startTime) { this.startTime = startTime; }
+    public void setStartTime(LocalDateTime startTime) { this.startTime = startTime; fireRescheduled(); }
     public LocalDateTime getEndTime() { return endTime; }
-    public void setEndTime(LocalDateTime endTime) { this.endTime = endTime; }
+    public void setEndTime(LocalDateTime endTime) { this.endTime = endTime; fireRescheduled(); }
+    // Moves the session in one step, so listeners never see a half-updated time range.
+    public void reschedule(LocalDateTime startTime, LocalDateTime endTime) {
+        this.startTime = startTime;
+        this.endTime = endTime;
+        fireRescheduled();
+    }
     public String getRecurrence() { return recurrence; }
-    public void setRecurrence(String recurrence) { this.recurrence = recurrence; }
+    public void setRecurrence(String recurrence) {
+        if (recurrence != null && !recurrence.isBlank()) {
+            recurrenceRule = RecurrenceRule.parse(recurrence);
+        }
+        this.recurrence = recurrence;
+        fireRescheduled();
+        fireDetailsChanged();
+    }
+    
+    // The parsed recurrence, or null for a one-off session (or one whose stored rule is invalid).
+    public RecurrenceRule getRecurrenceRule() {
+        String current = recurrence;
+        if (current == null || current.isBlank()) {
+            return null;
+        }
+        RecurrenceRule rule = recurrenceRule;
+        if (rule == null || !rule.getSource().equals(current)) {
+            try {
+                rule = RecurrenceRule.parse(current);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+            recurrenceRule = rule;
+        }
+        return rule;
+    }
+    
+    public boolean isRecurring() {
+        return getRecurrenceRule() != null;
+    }
+    
+    // End of the last occurrence, or LocalDateTime.MAX if the recurrence never ends.
+    public LocalDateTime getSpanEnd() {
+        RecurrenceRule rule = getRecurrenceRule();
+        if (rule == null) {
+            return endTime;
+        }
+        LocalDate last = rule.getLastDate(startTime.toLocalDate());
+        return last == null ? LocalDateTime.MAX
+            : last.atTime(startTime.toLocalTime()).plus(Duration.between(startTime, endTime));
+    }
+    
+    // Start times of the occurrences that overlap [from, to), generated as the iteration goes.
+    public Iterable<LocalDateTime> getOccurrences(LocalDateTime from, LocalDateTime to) {
+        RecurrenceRule rule = getRecurrenceRule();
+        LocalDateTime first = startTime;
+        Duration length = Duration.between(first, endTime);
+        if (rule == null) {
+            return first.isBefore(to) && endTime.isAfter(from) ? List.of(first) : List.of();
+        }
+        LocalTime time = first.toLocalTime();
+        return () -> new Iterator<LocalDateTime>() {
+            private final Iterator<LocalDate> dates = rule.occurrences(first.toLocalDate(), from.minus(length).toLocalDate());
+            private LocalDateTime next = advance();
+            
+            private LocalDateTime advance() {
+                while (dates.hasNext()) {
+                    LocalDateTime candidate = dates.next().atTime(time);
+                    if (!candidate.isBefore(to)) {
+                        return null;
+                    }
+                    if (candidate.plus(length).isAfter(from)) {
+                        return candidate;
+                    }
+                }
+                return null;
+            }
+            
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+            
+            @Override
+            public LocalDateTime next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                LocalDateTime current = next;
+                next = advance();
+                return current;
+            }
+        };
+    }
+    
+    public boolean occursDuring(LocalDateTime from, LocalDateTime to) {
+        return getOccurrences(from, to).iterator().hasNext();
+    }
+    
+    // Whether any occurrence of this session overlaps any occurrence of the other.
+    public boolean overlaps(Session other) {
+        RecurrenceRule rule = getRecurrenceRule();
+        RecurrenceRule otherRule = other.getRecurrenceRule();
+        if (rule == null) {
+            return other.occursDuring(startTime, endTime);
+        }
+        if (otherRule == null) {
+            return occursDuring(other.startTime, other.endTime);
+        }
+        LocalDateTime from = startTime.isAfter(other.startTime) ? startTime : other.startTime;
+        LocalDateTime spanEnd = getSpanEnd();
+        LocalDateTime otherSpanEnd = other.getSpanEnd();
+        LocalDateTime to = spanEnd.isBefore(otherSpanEnd) ? spanEnd : otherSpanEnd;
+        if (!from.isBefore(to)) {
+            return false;
+        }
+        // Once both have started and every exception is behind them, the two patterns repeat
+        // together, so one common period past that point settles the question.
+        LocalDate settled = from.toLocalDate();
+        for (LocalDate exception : new LocalDate[] { rule.getLastException(), otherRule.getLastException() }) {
+            if (exception != null && !exception.isBefore(settled)) {
+                settled = exception.plusDays(1);
+            }
+        }
+        Duration length = Duration.between(startTime, endTime);
+        long period = lcm(rule.getPeriodDays(), otherRule.getPeriodDays());
+        long slack = length.toDays() + Duration.between(other.startTime, other.endTime).toDays() + 2;
+        LocalDateTime horizon = settled.plusDays(period + slack).atStartOfDay();
+        if (horizon.isBefore(to)) {
+            to = horizon;
+        }
+        for (LocalDateTime occurrence : getOccurrences(from, to)) {
+            if (other.occursDuring(occurrence, occurrence.plus(length))) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static long lcm(long a, long b) {
+        long x = a;
+        long y = b;
+        while (y != 0) {
+            long r = x % y;
+            x = y;
+            y = r;
+        }
+        return a / x * b;
+    }
     public String getLocation() { return location; }
-    public void setLocation(String location) { this.location = location; }
+    public void setLocation(String location) { this.location = location; fireDetailsChanged(); }
     public Set<GroupMember> getAssignedGroup() { return assignedGroup; }
     public SessionStatus getStatus() { return status; }
-    public void setStatus(SessionStatus status) { this.status = status; }
+    public void setStatus(SessionStatus status) {
+        SessionStatus previous = this.status;
+        this.status = status;
+        if (previous != status && listeners != null) {
+            for (SessionListener listener : listeners) {
+                listener.sessionStatusChanged(this, previous);
+            }
+        }
+    }
     public Set<Resource> getResources() { return resources; }
-    public void addResource(Resource resource) { this.resources.add(resource); }
+    public void addResource(Resource resource) { if (this.resources.add(resource)) fireDetailsChanged(); }
+    
+    public synchronized void addListener(SessionListener listener) {
+        if (listeners == null) {
+            listeners = new CopyOnWriteArrayList<>();
+        }
+        listeners.addIfAbsent(listener);
+    }
+    
+    public synchronized void removeListener(SessionListener listener) {
+        if (listeners != null) {
+            listeners.remove(listener);
+        }
+    }
+    
+    protected void fireRescheduled() {
+        if (listeners != null) {
+            for (SessionListener listener : listeners) {
+                listener.sessionRescheduled(this);
+            }
+        }
+    }
+    
+    protected void fireDetailsChanged() {
+        if (listeners != null) {
+            for (SessionListener listener : listeners) {
+                listener.sessionDetailsChanged(this);
+            }
+        }
+    }
+}
+
+// A repeat pattern for a session, read from strings such as
+// "FREQ=WEEKLY;INTERVAL=2;BYDAY=MO,WE;UNTIL=2025-06-30;EXDATE=2025-03-03" (COUNT=n also
+// works, and a bare "DAILY" or "WEEKLY" is accepted). Occurrences are the matching dates on
+// or after the session's first date; they are worked out arithmetically when asked for and
+// never stored, so a rule with no end costs no more than a single session.
+class RecurrenceRule implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final String[] DAY_CODES = { "MO", "TU", "WE", "TH", "FR", "SA", "SU" };
+    private final String source;
+    private final RecurrenceFrequency frequency;
+    private final int interval;
+    // Sorted; empty means the weekday of the first date.
+    private final DayOfWeek[] byDay;
+    private final LocalDate until;
+    private final int count;
+    private final TreeSet<LocalDate> exceptions;
+    
+    public RecurrenceRule(RecurrenceFrequency frequency, int interval, Collection<DayOfWeek> byDay,
+                          LocalDate until, int count, Collection<LocalDate> exceptions) {
+        this(null, frequency, interval, byDay, until, count, exceptions);
+    }
+    
+    private RecurrenceRule(String source, RecurrenceFrequency frequency, int interval, Collection<DayOfWeek> byDay,
+                           LocalDate until, int count, Collection<LocalDate> exceptions) {
+        if (frequency == null) {
+            throw new IllegalArgumentException("Frequency is required");
+        }
+        if (interval < 1) {
+            throw new IllegalArgumentException("Interval must be at least 1");
+        }
+        if (count < 0) {
+            throw new IllegalArgumentException("Count cannot be negative");
+        }
+        if (frequency == RecurrenceFrequency.DAILY && !byDay.isEmpty()) {
+            throw new IllegalArgumentException("BYDAY needs a weekly frequency");
+        }
+        this.frequency = frequency;
+        this.interval = interval;
+        this.byDay = byDay.isEmpty() ? new DayOfWeek[0] : EnumSet.copyOf(byDay).toArray(new DayOfWeek[0]);
+        this.until = until;
+        this.count = count;
+        this.exceptions = new TreeSet<>(exceptions);
+        this.source = source != null ? source : toString();
+    }
+    
+    public static RecurrenceRule parse(String text) {
+        String trimmed = text.trim().toUpperCase();
+        if (!trimmed.contains("=")) {
+            return new RecurrenceRule(text, frequencyOf(trimmed), 1, List.of(), null, 0, List.of());
+        }
+        RecurrenceFrequency frequency = null;
+        int interval = 1;
+        List<DayOfWeek> byDay = new ArrayList<>();
+        LocalDate until = null;
+        int count = 0;
+        List<LocalDate> exceptions = new ArrayList<>();
+        try {
+            for (String part : trimmed.split(";")) {
+                if (part.isBlank()) {
+                    continue;
+                }
+                int eq = part.indexOf('=');
+                if (eq < 0) {
+                    throw new IllegalArgumentException("Expected KEY=VALUE but got " + part);
+                }
+                String value = part.substring(eq + 1).trim();
+                switch (part.substring(0, eq).trim()) {
+                    case "FREQ": frequency = frequencyOf(value); break;
+                    case "INTERVAL": interval = Integer.parseInt(value); break;
+                    case "COUNT": count = Integer.parseInt(value); break;
+                    case "UNTIL": until = LocalDate.parse(value); break;
+                    case "BYDAY":
+                        for (String code : value.split(",")) {
+                            byDay.add(dayOf(code.trim()));
+                        }
+                        break;
+                    case "EXDATE":
+                        for (String date : value.split(",")) {
+                            exceptions.add(LocalDate.parse(date.trim()));
+                        }
+                        break;
+                    default: throw new IllegalArgumentException("Unknown recurrence key " + part.substring(0, eq));
+                }
+            }
+        } catch (NumberFormatException | DateTimeException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+        if (frequency == null) {
+            throw new IllegalArgumentException("FREQ is required");
+        }
+        return new RecurrenceRule(text, frequency, interval, byDay, until, count, exceptions);
+    }
+    
+    private static RecurrenceFrequency frequencyOf(String value) {
+        try {
+            return RecurrenceFrequency.valueOf(value);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown frequency " + value);
+        }
+    }
+    
+    private static DayOfWeek dayOf(String code) {
+        for (int i = 0; i < DAY_CODES.length; i++) {
+            if (DAY_CODES[i].equals(code)) {
+                return DayOfWeek.of(i + 1);
+            }
+        }
+        throw new IllegalArgumentException("Unknown weekday " + code);
+    }
+    
+    public boolean occursOn(LocalDate first, LocalDate day) {
+        if (day.isBefore(first) || exceptions.contains(day)) {
+            return false;
+        }
+        LocalDate last = getLastDate(first);
+        return (last == null || !day.isAfter(last)) && nextMatch(first, day).equals(day);
+    }
+    
+    // Occurrence dates on or after from, in order, computed one at a time.
+    public Iterator<LocalDate> occurrences(LocalDate first, LocalDate from) {
+        return new Iterator<LocalDate>() {
+            private final LocalDate last = getLastDate(first);
+            private LocalDate next = skipExceptions(nextMatch(first, from));
+            
+            private LocalDate skipExceptions(LocalDate date) {
+                while (last == null || !date.isAfter(last)) {
+                    if (!exceptions.contains(date)) {
+                        return date;
+                    }
+                    date = nextMatch(first, date.plusDays(1));
+                }
+                return null;
+            }
+            
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+            
+            @Override
+            public LocalDate next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                LocalDate current = next;
+                next = skipExceptions(nextMatch(first, current.plusDays(1)));
+                return current;
+            }
+        };
+    }
+    
+    // Date of the last occurrence, or null if the rule never ends. Exceptions still count
+    // toward COUNT, as in iCalendar.
+    public LocalDate getLastDate(LocalDate first) {
+        LocalDate last = until;
+        if (count > 0) {
+            LocalDate counted = nthMatch(first, count);
+            if (last == null || counted.isBefore(last)) {
+                last = counted;
+            }
+        }
+        return last;
+    }
+    
+    // Days after which the pattern repeats.
+    public int getPeriodDays() {
+        return frequency == RecurrenceFrequency.DAILY ? interval : 7 * interval;
+    }
+    
+    public LocalDate getLastException() {
+        return exceptions.isEmpty() ? null : exceptions.last();
+    }
+    
+    // First date on or after day that matches the pattern, ignoring bounds and exceptions.
+    private LocalDate nextMatch(LocalDate first, LocalDate day) {
+        if (day.isBefore(first)) {
+            day = first;
+        }
+        if (frequency == RecurrenceFrequency.DAILY) {
+            long steps = Math.floorDiv(day.toEpochDay() - first.toEpochDay() + interval - 1, interval);
+            return first.plusDays(steps * interval);
+        }
+        DayOfWeek[] days = daysFor(first);
+        LocalDate firstMonday = first.minusDays(first.getDayOfWeek().getValue() - 1);
+        long week = (day.toEpochDay() - firstMonday.toEpochDay()) / 7;
+        if (week % interval != 0) {
+            week += interval - week % interval;
+            day = firstMonday.plusWeeks(week);
+        }
+        while (true) {
+            LocalDate monday = firstMonday.plusWeeks(week);
+            for (DayOfWeek dayOfWeek : days) {
+                LocalDate date = monday.plusDays(dayOfWeek.getValue() - 1);
+                if (!date.isBefore(day)) {
+                    return date;
+                }
+            }
+            week += interval;
+        }
+    }
+    
+    // The n-th (1-based) date matching the pattern, ignoring bounds and exceptions.
+    private LocalDate nthMatch(LocalDate first, int n) {
+        if (frequency == RecurrenceFrequency.DAILY) {
+            return first.plusDays((long) (n - 1) * interval);
+        }
+        DayOfWeek[] days = daysFor(first);
+        LocalDate firstMonday = first.minusDays(first.getDayOfWeek().getValue() - 1);
+        int inFirstWeek = 0;
+        for (DayOfWeek day : days) {
+            if (day.compareTo(first.getDayOfWeek()) >= 0) {
+                inFirstWeek++;
+            }
+        }
+        if (n <= inFirstWeek) {
+            return firstMonday.plusDays(days[days.length - inFirstWeek + n - 1].getValue() - 1);
+        }
+        int remaining = n - inFirstWeek - 1;
+        long week = (long) (remaining / days.length + 1) * interval;
+        return firstMonday.plusWeeks(week).plusDays(days[remaining % days.length].getValue() - 1);
+    }
+    
+    private DayOfWeek[] daysFor(LocalDate first) {
+        return byDay.length > 0 ? byDay : new DayOfWeek[] { first.getDayOfWeek() };
+    }
+    
+    public String getSource() { return source; }
+    public RecurrenceFrequency getFrequency() { return frequency; }
+    public int getInterval() { return interval; }
+    public LocalDate getUntil() { return until; }
+    public int getCount() { return count; }
+    
+    @Override
+    public String toString() {
+        StringBuilder rule = new StringBuilder("FREQ=").append(frequency);
+        if (interval != 1) rule.append(";INTERVAL=").append(interval);
+        if (byDay.length > 0) {
+            rule.append(";BYDAY=").append(Arrays.stream(byDay)
+                .map(day -> DAY_CODES[day.getValue() - 1]).collect(Collectors.joining(",")));
+        }
+        if (until != null) rule.append(";UNTIL=").append(until);
+        if (count > 0) rule.append(";COUNT=").append(count);
+        if (!exceptions.isEmpty()) {
+            rule.append(";EXDATE=").append(exceptions.stream().map(LocalDate::toString).collect(Collectors.joining(",")));
+        }
+        return rule.toString();
+    }
 }
 
 abstract class Resource implements Serializable {
-    protected static int idCounter = 1;
+    protected static final AtomicInteger idCounter = new AtomicInteger(1);
     protected final int id;
     protected String name;
     protected ResourceType type;
     protected boolean available;
     protected Set<Session> assignedSessions;
+    // Ordered by start time; rebuilt from assignedSessions after deserialization.
+    protected transient SessionIntervalIndex schedule;
+    private transient SessionListener scheduleIndexer;
     
     public Resource(String name, ResourceType type) {
-        this.id = idCounter++;
+        this(idCounter.getAndIncrement(), name, type);
+    }
+    
+    protected Resource(int id, String name, ResourceType type) {
+        this.id = id;
+        idCounter.accumulateAndGet(id + 1, Math::max);
         this.name = name;
         this.type = type;
         this.available = true;
@@ -251,12 +917,32 @@ abstract class Resource implements Serializable {
     }
     
     public boolean isAvailableAt(LocalDateTime startTime, LocalDateTime endTime) {
-        for (Session session : assignedSessions) {
-            if (session.getStartTime().isBefore(endTime) && session.getEndTime().isAfter(startTime)) {
-                return false;
+        return available && !getSchedule().hasOverlap(startTime, endTime);
+    }
+    
+    // Earliest start at or after notBefore where the resource is free for the whole duration,
+    // or null if the resource has been marked unavailable.
+    public LocalDateTime findNextFreeSlot(Duration duration, LocalDateTime notBefore) {
+        if (!available) {
+            return null;
+        }
+        return getSchedule().findNextFreeSlot(notBefore, duration);
+    }
+    
+    synchronized SessionIntervalIndex getSchedule() {
+        if (schedule == null) {
+            schedule = new SessionIntervalIndex();
+            scheduleIndexer = session -> schedule.add(session);
+            for (Session session : assignedSessions) {
+                indexSession(session);
             }
         }
-        return available;
+        return schedule;
+    }
+    
+    private void indexSession(Session session) {
+        schedule.add(session);
+        session.addListener(scheduleIndexer);
     }
     
     // Getters and setters
@@ -267,7 +953,20 @@ abstract class Resource implements Serializable {
     public boolean isAvailable() { return available; }
     public void setAvailable(boolean available) { this.available = available; }
     public Set<Session> getAssignedSessions() { return assignedSessions; }
-    public void addSession(Session session) { this.assignedSessions.add(session); }
+    
+    public synchronized void addSession(Session session) {
+        if (assignedSessions.add(session)) {
+            getSchedule();
+            indexSession(session);
+        }
+    }
+    
+    public synchronized void removeSession(Session session) {
+        if (assignedSessions.remove(session) && schedule != null) {
+            schedule.remove(session);
+            session.removeListener(scheduleIndexer);
+        }
+    }
 }
 
 // ===================== CONCRETE CLASSES =====================
@@ -276,15 +975,32 @@ class Topic extends StudyTask {
     private int priority;
     
     public Topic(String title, String description, Difficulty difficulty, double estimatedHours, String subject) {
-        super(title, description, difficulty, estimatedHours);
+        this(idCounter.getAndIncrement(), title, description, difficulty, estimatedHours, subject);
+    }
+    
+    Topic(int id, String title, String description, Difficulty difficulty, double estimatedHours, String subject) {
+        super(id, title, description, difficulty, estimatedHours);
         this.subject = subject;
         this.priority = 1;
     }
     
+    @Override
+    protected void writeTypeCSV(Appendable out) throws IOException {
+        out.append(",TOPIC,");
+        ExportUtils.appendCsvField(out, subject);
+        out.append(',');
+    }
+    
+    @Override
+    protected void writeTypeJSON(Appendable out) throws IOException {
+        out.append(",\"type\":\"TOPIC\",\"subject\":");
+        ExportUtils.appendJsonString(out, subject);
+    }
+    
     public String getSubject() { return subject; }
-    public void setSubject(String subject) { this.subject = subject; }
+    public void setSubject(String subject) { this.subject = subject; fireDetailsChanged(); }
     public int getPriority() { return priority; }
-    public void setPriority(int priority) { this.priority = priority; }
+    public void setPriority(int priority) { this.priority = priority; fireDetailsChanged(); }
 }
 
 class Assignment extends StudyTask {
@@ -292,27 +1008,46 @@ class Assignment extends StudyTask {
     private double maxScore;
     
     public Assignment(String title, String description, Difficulty difficulty, double estimatedHours, LocalDate dueDate) {
-        super(title, description, difficulty, estimatedHours);
+        this(idCounter.getAndIncrement(), title, description, difficulty, estimatedHours, dueDate);
+    }
+    
+    Assignment(int id, String title, String description, Difficulty difficulty, double estimatedHours, LocalDate dueDate) {
+        super(id, title, description, difficulty, estimatedHours);
         this.dueDate = dueDate;
         this.maxScore = 100.0;
     }
     
+    @Override
+    protected void writeTypeCSV(Appendable out) throws IOException {
+        out.append(",ASSIGNMENT,,").append(dueDate == null ? "" : dueDate.toString());
+    }
+    
+    @Override
+    protected void writeTypeJSON(Appendable out) throws IOException {
+        out.append(",\"type\":\"ASSIGNMENT\",\"dueDate\":");
+        ExportUtils.appendJsonString(out, dueDate == null ? null : dueDate.toString());
+    }
+    
     public LocalDate getDueDate() { return dueDate; }
-    public void setDueDate(LocalDate dueDate) { this.dueDate = dueDate; }
+    public void setDueDate(LocalDate dueDate) { this.dueDate = dueDate; fireDetailsChanged(); }
     public double getMaxScore() { return maxScore; }
-    public void setMaxScore(double maxScore) { this.maxScore = maxScore; }
+    public void setMaxScore(double maxScore) { this.maxScore = maxScore; fireDetailsChanged(); }
 }
 
 class StudySession extends Session {
     private String sessionType;
     
     public StudySession(int taskId, LocalDateTime startTime, LocalDateTime endTime, String location) {
-        super(taskId, startTime, endTime, location);
+        this(idCounter.getAndIncrement(), taskId, startTime, endTime, location);
+    }
+    
+    StudySession(int id, int taskId, LocalDateTime startTime, LocalDateTime endTime, String location) {
+        super(id, taskId, startTime, endTime, location);
         this.sessionType = "STUDY";
     }
     
     public String getSessionType() { return sessionType; }
-    public void setSessionType(String sessionType) { this.sessionType = sessionType; }
+    public void setSessionType(String sessionType) { this.sessionType = sessionType; fireDetailsChanged(); }
 }
 
 class Book extends Resource {
@@ -320,7 +1055,11 @@ class Book extends Resource {
     private String isbn;
     
     public Book(String name, String author, String isbn) {
-        super(name, ResourceType.BOOK);
+        this(idCounter.getAndIncrement(), name, author, isbn);
+    }
+    
+    Book(int id, String name, String author, String isbn) {
+        super(id, name, ResourceType.BOOK);
         this.author = author;
         this.isbn = isbn;
     }
@@ -334,7 +1073,11 @@ class Classroom extends Resource {
     private String building;
     
     public Classroom(String name, int capacity, String building) {
-        super(name, ResourceType.CLASSROOM);
+        this(idCounter.getAndIncrement(), name, capacity, building);
+    }
+    
+    Classroom(int id, String name, int capacity, String building) {
+        super(id, name, ResourceType.CLASSROOM);
         this.capacity = capacity;
         this.building = building;
     }
@@ -344,7 +1087,7 @@ class Classroom extends Resource {
 }
 
 class GroupMember implements Serializable {
-    private static int idCounter = 1;
+    private static final AtomicInteger idCounter = new AtomicInteger(1);
     private final int id;
     private String name;
     private String email;
@@ -353,7 +1096,12 @@ class GroupMember implements Serializable {
     private Map<String, Double> performance;
     
     public GroupMember(String name, String email, String role) {
-        this.id = idCounter++;
+        this(idCounter.getAndIncrement(), name, email, role);
+    }
+    
+    GroupMember(int id, String name, String email, String role) {
+        this.id = id;
+        idCounter.accumulateAndGet(id + 1, Math::max);
         this.name = name;
         this.email = email;
         this.role = role;
@@ -389,6 +1137,7 @@ class RevisionPlan implements Serializable {
     private int stage;
     private LocalDate lastRevisionDate;
     private int completedRevisions;
+    private transient RevisionListener listener;
     
     public RevisionPlan(int taskId) {
         this.taskId = taskId;
@@ -397,66 +1146,176 @@ class RevisionPlan implements Serializable {
         this.nextRevisionDate = LocalDate.now().plusDays(1);
     }
     
+    RevisionPlan(int taskId, LocalDate nextRevisionDate, int stage, LocalDate lastRevisionDate, int completedRevisions) {
+        this.taskId = taskId;
+        restore(nextRevisionDate, stage, lastRevisionDate, completedRevisions);
+    }
+    
+    void restore(LocalDate nextRevisionDate, int stage, LocalDate lastRevisionDate, int completedRevisions) {
+        this.nextRevisionDate = nextRevisionDate;
+        this.stage = stage;
+        this.lastRevisionDate = lastRevisionDate;
+        this.completedRevisions = completedRevisions;
+    }
+    
     public void markRevised(RevisionAlgorithm algorithm) {
         this.lastRevisionDate = LocalDate.now();
         this.completedRevisions++;
         this.stage++;
         this.nextRevisionDate = algorithm.calculateNextRevisionDate(lastRevisionDate, stage);
+        fireRescheduled();
+    }
+    
+    private void fireRescheduled() {
+        if (listener != null) {
+            listener.revisionRescheduled(this);
+        }
     }
     
     // Getters and setters
     public int getTaskId() { return taskId; }
     public LocalDate getNextRevisionDate() { return nextRevisionDate; }
-    public void setNextRevisionDate(LocalDate nextRevisionDate) { this.nextRevisionDate = nextRevisionDate; }
+    public void setNextRevisionDate(LocalDate nextRevisionDate) { this.nextRevisionDate = nextRevisionDate; fireRescheduled(); }
+    public void setListener(RevisionListener listener) { this.listener = listener; }
     public int getStage() { return stage; }
     public void setStage(int stage) { this.stage = stage; }
     public LocalDate getLastRevisionDate() { return lastRevisionDate; }
     public int getCompletedRevisions() { return completedRevisions; }
 }
 
+// A group of members and nested subgroups (department, cohort, study group, ...). Every group
+// keeps a flattened, de-duplicated view of all members beneath it, plus pointers to the groups
+// containing it; adding a member or subgroup pushes the new members up through the ancestors,
+// so membership checks and sizes are O(1) and listing all members copies nothing. The view
+// is copy-on-write, so readers may iterate it while the hierarchy is being edited.
 class CompositeGroup implements Serializable {
+    // Guards edits to the hierarchy, which touch every ancestor of the changed group.
+    private static final Object HIERARCHY_LOCK = new Object();
     private String name;
     private List<GroupMember> members;
     private List<CompositeGroup> subGroups;
     private GroupMember leader;
+    private transient List<CompositeGroup> parents;
+    private transient CopyOnWriteArrayList<GroupMember> allMembers;
+    private transient Set<Integer> allMemberIds;
     
     public CompositeGroup(String name) {
         this.name = name;
         this.members = new ArrayList<>();
         this.subGroups = new ArrayList<>();
+        initFlattened();
+    }
+    
+    private void initFlattened() {
+        this.parents = new ArrayList<>();
+        this.allMembers = new CopyOnWriteArrayList<>();
+        this.allMemberIds = ConcurrentHashMap.newKeySet();
     }
     
     public void addMember(GroupMember member) {
-        members.add(member);
-        if (leader == null) {
-            leader = member;
+        synchronized (HIERARCHY_LOCK) {
+            members.add(member);
+            if (leader == null) {
+                leader = member;
+            }
+            propagate(List.of(member));
         }
     }
     
     public void addSubGroup(CompositeGroup group) {
-        subGroups.add(group);
+        synchronized (HIERARCHY_LOCK) {
+            if (group == this || ancestors().contains(group)) {
+                throw new IllegalArgumentException("Group " + group.getName() + " already contains " + name);
+            }
+            subGroups.add(group);
+            group.parents.add(this);
+            propagate(group.allMembers);
+        }
     }
     
-    public List<GroupMember> getAllMembers() {
-        List<GroupMember> allMembers = new ArrayList<>(members);
-        for (CompositeGroup subGroup : subGroups) {
-            allMembers.addAll(subGroup.getAllMembers());
+    // Adds members to this group's flattened view and to every ancestor's, skipping any a
+    // group already has.
+    private void propagate(List<GroupMember> added) {
+        List<GroupMember> snapshot = new ArrayList<>(added);
+        for (CompositeGroup group : selfAndAncestors()) {
+            List<GroupMember> joined = new ArrayList<>();
+            for (GroupMember member : snapshot) {
+                if (group.allMemberIds.add(member.getId())) {
+                    joined.add(member);
+                }
+            }
+            group.allMembers.addAll(joined);
+        }
+    }
+    
+    private Set<CompositeGroup> ancestors() {
+        Set<CompositeGroup> ancestors = selfAndAncestors();
+        ancestors.remove(this);
+        return ancestors;
+    }
+    
+    private Set<CompositeGroup> selfAndAncestors() {
+        Set<CompositeGroup> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<CompositeGroup> pending = new ArrayDeque<>();
+        pending.push(this);
+        while (!pending.isEmpty()) {
+            CompositeGroup group = pending.pop();
+            if (seen.add(group)) {
+                group.parents.forEach(pending::push);
+            }
         }
-        return allMembers;
+        return seen;
     }
     
+    // Every member in this group or any subgroup, each once, in the order they joined.
+    // Read-only view, kept current as members are added.
+    public List<GroupMember> getAllMembers() {
+        return Collections.unmodifiableList(allMembers);
+    }
+    
+    // Number of distinct members in this group and its subgroups.
     public int getTotalSize() {
-        int size = members.size();
-        for (CompositeGroup subGroup : subGroups) {
-            size += subGroup.getTotalSize();
+        return allMemberIds.size();
+    }
+    
+    // Whether the member belongs to this group directly or through any subgroup.
+    public boolean isMember(GroupMember member) {
+        return allMemberIds.contains(member.getId());
+    }
+    
+    public boolean isMember(int memberId) {
+        return allMemberIds.contains(memberId);
+    }
+    
+    // Groups that directly contain this one.
+    public List<CompositeGroup> getParents() {
+        return Collections.unmodifiableList(parents);
+    }
+    
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        initFlattened();
+        List<GroupMember> flattened = new ArrayList<>();
+        for (GroupMember member : members) {
+            if (allMemberIds.add(member.getId())) {
+                flattened.add(member);
+            }
+        }
+        for (CompositeGroup group : subGroups) {
+            group.parents.add(this);
+            for (GroupMember member : group.allMembers) {
+                if (allMemberIds.add(member.getId())) {
+                    flattened.add(member);
+                }
+            }
         }
-        return size;
+        allMembers.addAll(flattened);
     }
     
     // Getters and setters
     public String getName() { return name; }
-    public List<GroupMember> getMembers() { return members; }
-    public List<CompositeGroup> getSubGroups() { return subGroups; }
+    public List<GroupMember> getMembers() { return Collections.unmodifiableList(members); }
+    public List<CompositeGroup> getSubGroups() { return Collections.unmodifiableList(subGroups); }
     public GroupMember getLeader() { return leader; }
     public void setLeader(GroupMember leader) { this.leader = leader; }
 }
\ No newline at end of file